@@ -0,0 +1,126 @@
+package bank;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Drives a BankHttpServer with a mix of lookups, deposits, withdrawals and transfers from many
+// concurrent clients, then reports throughput and latency percentiles. Run with
+//   java -cp benchmarks/target/benchmarks.jar bank.BankLoadTest [concurrency] [seconds] [accounts] [baseUrl]
+// Without a base URL an embedded server over a scratch directory is started and seeded with the
+// accounts; with one, accounts 0 .. accounts-1 must already exist there.
+class BankLoadTest {
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int accounts = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        String baseUrl = args.length > 3 ? args[3] : null;
+        BankHttpServer embedded = null;
+        Path scratch = null;
+        if (baseUrl == null) {
+            scratch = ScratchDirectory.create("bank-load");
+            BankService service = new BankService(new BankAccountManager(scratch.resolve("accounts.ser").toString()), Durability.BATCHED);
+            for (int i = 0; i < accounts; i++) {
+                service.getManager().saveAccountDetails(new CheckingAccount(i, "load" + i, 1000000, 1000));
+            }
+            embedded = new BankHttpServer(service, 0);
+            embedded.start();
+            baseUrl = "http://localhost:" + embedded.getPort();
+        }
+        final String base = baseUrl;
+        final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final long[][] latencies = new long[concurrency][];
+        final int[] counts = new int[concurrency];
+        final int[] errors = new int[concurrency];
+        Thread[] workers = new Thread[concurrency];
+        long start = System.nanoTime();
+        for (int t = 0; t < concurrency; t++) {
+            final int worker = t;
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    Random random = new Random(worker);
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = nextRequest(random, base, accounts);
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() != 200) {
+                                errors[worker]++;
+                            }
+                        } catch (IOException | InterruptedException e) {
+                            errors[worker]++;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - begin;
+                    }
+                    latencies[worker] = samples;
+                    counts[worker] = count;
+                }
+            }, "load-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        int total = 0;
+        int failed = 0;
+        for (int t = 0; t < concurrency; t++) {
+            total += counts[t];
+            failed += errors[t];
+        }
+        long[] all = new long[total];
+        int filled = 0;
+        for (int t = 0; t < concurrency; t++) {
+            System.arraycopy(latencies[t], 0, all, filled, counts[t]);
+            filled += counts[t];
+        }
+        Arrays.sort(all);
+        System.out.println(String.format("concurrency %d, %d requests in %.1fs, %d errors", concurrency, total, elapsedSeconds, failed));
+        System.out.println(String.format("throughput %.0f req/s", total / elapsedSeconds));
+        System.out.println(String.format("latency p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms",
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), total == 0 ? 0 : all[total - 1] / 1e6));
+        if (embedded != null) {
+            embedded.stop();
+            ScratchDirectory.delete(scratch);
+        }
+    }
+
+    // 40% deposits, 30% withdrawals, 20% lookups, 10% transfers
+    static HttpRequest nextRequest(Random random, String base, int accounts) {
+        int account = random.nextInt(accounts);
+        int roll = random.nextInt(10);
+        if (roll < 4) {
+            return post(base + "/accounts/" + account + "/deposit", "{\"amount\": 1.25}");
+        } else if (roll < 7) {
+            return post(base + "/accounts/" + account + "/withdraw", "{\"amount\": 1}");
+        } else if (roll < 9) {
+            return HttpRequest.newBuilder(URI.create(base + "/accounts/" + account)).GET().build();
+        }
+        return post(base + "/transfers", "{\"from\": " + account + ", \"to\": " + random.nextInt(accounts) + ", \"amount\": 0.5}");
+    }
+
+    private static HttpRequest post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url)).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    // Nearest-rank percentile of sorted nanosecond samples, in milliseconds
+    static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))] / 1e6;
+    }
+}
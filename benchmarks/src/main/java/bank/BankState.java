@@ -0,0 +1,66 @@
+package bank;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// A manager over a scratch directory seeded with savings accounts user0 .. user<accounts-1>,
+// numbered 0 .. accounts-1, shared by every thread of a benchmark
+@State(Scope.Benchmark)
+public class BankState {
+    @Param("10000")
+    public int accounts;
+
+    Path directory;
+    BankAccountManager manager;
+    Ledger ledger;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = ScratchDirectory.create("bank-bench");
+        manager = seed(directory, accounts);
+        ledger = new Ledger(manager);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        manager.close();
+        ScratchDirectory.delete(directory);
+    }
+
+    static BankAccountManager seed(Path directory, int accounts) throws IOException {
+        Files.createDirectories(directory);
+        BankAccountManager manager = new BankAccountManager(directory.resolve("accounts.ser").toString());
+        for (int i = 0; i < accounts; i++) {
+            manager.saveAccountDetails(new SavingsAccount(i, "user" + i, 1000000, 0.01));
+        }
+        manager.checkpoint();
+        return manager;
+    }
+
+    // Each thread works on its own slice of the accounts, as separate tellers would
+    @State(Scope.Thread)
+    public static class Teller {
+        private int first;
+        private int slice;
+        private long invocation;
+
+        @Setup(Level.Trial)
+        public void assign(BankState bank, ThreadParams threads) {
+            slice = Math.max(1, bank.accounts / threads.getThreadCount());
+            first = threads.getThreadIndex() * slice % bank.accounts;
+        }
+
+        int nextAccount() {
+            return first + (int) (invocation++ % slice);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Deposits and withdrawals through the ledger. The recordTransaction variants run the same deposit
+// from 1, 4 and one thread per core, to show how recording scales across the stripe locks.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LedgerBenchmark {
+    @Benchmark
+    public boolean deposit(BankState bank, BankState.Teller teller) {
+        return bank.ledger.deposit(teller.nextAccount(), 1);
+    }
+
+    @Benchmark
+    public boolean withdraw(BankState bank, BankState.Teller teller) {
+        return bank.ledger.withdraw(teller.nextAccount(), 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean recordTransaction1(BankState bank, BankState.Teller teller) {
+        return bank.ledger.deposit(teller.nextAccount(), 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean recordTransaction4(BankState bank, BankState.Teller teller) {
+        return bank.ledger.deposit(teller.nextAccount(), 1);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean recordTransactionMax(BankState bank, BankState.Teller teller) {
+        return bank.ledger.deposit(teller.nextAccount(), 1);
+    }
+}
@@ -0,0 +1,57 @@
+package bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Password checks. Bounded by the verifier pool (bank.authThreads) and the hash cost
+// (bank.passwordIterations), so more callers than verifier threads only queue up.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginBenchmark {
+    private Path directory;
+    private CredentialStore credentials;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = ScratchDirectory.create("bank-bench");
+        credentials = new CredentialStore(directory.resolve("credentials.txt").toString());
+        credentials.register("user0", "password".toCharArray()).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        credentials.close();
+        ScratchDirectory.delete(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean login1() {
+        return credentials.verify("user0", "password".toCharArray()).join();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean loginMax() {
+        return credentials.verify("user0", "password".toCharArray()).join();
+    }
+}
@@ -0,0 +1,51 @@
+package bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Account lookups by holder name and by number, and a per-type query over every account's history
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    private TransactionQuery perType;
+
+    @Setup(Level.Trial)
+    public void prepare(BankState bank) {
+        // Give every account a history; the query window covers the last second, so older segments are skipped
+        for (int i = 0; i < bank.accounts; i++) {
+            bank.ledger.deposit(i, 1);
+        }
+        perType = new TransactionQuery().groupBy(TransactionQuery.GroupBy.TRANSACTION_TYPE);
+    }
+
+    @Benchmark
+    public double getAccountByName(BankState bank, BankState.Teller teller) {
+        return bank.manager.getAccount("user" + teller.nextAccount()).getBalance();
+    }
+
+    @Benchmark
+    public double getAccountByNumber(BankState bank, BankState.Teller teller) {
+        return bank.manager.getAccount(teller.nextAccount()).getBalance();
+    }
+
+    @Benchmark
+    public long queryByType(BankState bank) {
+        long now = System.currentTimeMillis();
+        return perType.between(now - 1000, now).run(bank.manager).scanned;
+    }
+}
@@ -0,0 +1,66 @@
+package bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Saving N accounts (a checkpoint) and loading them again (opening a manager over the files)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int accounts;
+
+    private Path directory;
+    private BankAccountManager saving;
+    private String loadPath;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = ScratchDirectory.create("bank-bench");
+        saving = BankState.seed(directory.resolve("save"), accounts);
+        // A separate copy, closed, so every load opens it from scratch
+        Path load = directory.resolve("load");
+        BankState.seed(load, accounts).close();
+        loadPath = load.resolve("accounts.ser").toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        saving.close();
+        ScratchDirectory.delete(directory);
+    }
+
+    @Benchmark
+    public void saveAccounts() {
+        saving.checkpoint();
+    }
+
+    @Benchmark
+    public double loadAccounts() {
+        BankAccountManager loaded = new BankAccountManager(loadPath);
+        try {
+            return loaded.getAccount(0).getBalance();
+        } finally {
+            loaded.close();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package bank;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Temporary directories for the benchmarks and load test, removed with everything in them afterwards
+class ScratchDirectory {
+    public static Path create(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix);
+    }
+
+    public static void delete(Path directory) {
+        delete(directory.toFile());
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,310 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+class AccountCodec {
+    public static final int MAGIC = 0x424E4B53; // "BNKS"
+    public static final short VERSION = 1;
+
+    static final byte PLAIN = 0;
+    static final byte SAVINGS = 1;
+    static final byte CHECKING = 2;
+    static final byte LOAN_MORTGAGE = 3;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int SEGMENT_BYTES = 8 + 4 + 8 + 8 + 8;
+    private static final int ENTRY_BYTES = 1 + 8 + 8 + 8;
+    private static final int MIN_ACCOUNT_BYTES = 1 + 4 + 2 + 8 + 4 + 4;
+
+    public static class Snapshot {
+        public final long generation;
+        public final List<BankAccount> accounts;
+
+        Snapshot(long generation, List<BankAccount> accounts) {
+            this.generation = generation;
+            this.accounts = accounts;
+        }
+    }
+
+    // Java serialization streams start with 0xACED; anything else is treated as this format
+    public static boolean isLegacySnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            return magic.position() == 2 && magic.getShort(0) == (short) 0xACED;
+        }
+    }
+
+    public static byte[] encode(BankAccount account) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(account));
+        encode(account, buffer);
+        return buffer.array();
+    }
+
+    public static int encodedSize(BankAccount account) throws IOException {
+        int size = 1 + 4 + 2 + holderBytes(account).length + 8;
+        if (account instanceof SavingsAccount) {
+            size += 8 + 4;
+        } else if (account instanceof CheckingAccount) {
+            size += 8;
+        } else if (account instanceof LoanMortgageAccount) {
+            size += 8 + 8 + 4 + 4;
+        }
+        size += 4 + account.segments.size() * SEGMENT_BYTES;
+        size += 4 + account.transactionLog.size() * ENTRY_BYTES;
+        return size;
+    }
+
+    static byte kindOf(BankAccount account) {
+        if (account instanceof SavingsAccount) {
+            return SAVINGS;
+        } else if (account instanceof CheckingAccount) {
+            return CHECKING;
+        } else if (account instanceof LoanMortgageAccount) {
+            return LOAN_MORTGAGE;
+        }
+        return PLAIN;
+    }
+
+    // The holder's length is written in two bytes, so longer names are refused rather than wrapped
+    private static byte[] holderBytes(BankAccount account) throws IOException {
+        byte[] holder = account.accountHolder.getBytes(StandardCharsets.UTF_8);
+        if (holder.length > 0xFFFF) {
+            throw new UTFDataFormatException("Account holder name too long: " + holder.length + " bytes");
+        }
+        return holder;
+    }
+
+    public static void encode(BankAccount account, ByteBuffer out) throws IOException {
+        out.put(kindOf(account));
+        out.putInt(account.accountNumber);
+        byte[] holder = holderBytes(account);
+        out.putShort((short) holder.length);
+        out.put(holder);
+        out.putDouble(account.balance);
+        if (account instanceof SavingsAccount) {
+            out.putDouble(((SavingsAccount) account).getInterestRate());
+            out.putInt(((SavingsAccount) account).getLastAccrualPeriod());
+        } else if (account instanceof CheckingAccount) {
+            out.putDouble(((CheckingAccount) account).getOverdraftLimit());
+        } else if (account instanceof LoanMortgageAccount) {
+            LoanMortgageAccount loan = (LoanMortgageAccount) account;
+            out.putDouble(loan.getLoanAmount());
+            out.putDouble(loan.getInterestRate());
+            out.putInt(loan.getLoanTermMonths());
+            out.putInt(loan.getPaymentsMade());
+        }
+        SegmentTable segments = account.segments;
+        out.putInt(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            out.putLong(segments.offset(i));
+            out.putInt(segments.count(i));
+            out.putLong(segments.minTimestamp(i));
+            out.putLong(segments.maxTimestamp(i));
+            out.putLong(segments.closingBalance(i));
+        }
+        TransactionLog log = account.transactionLog;
+        out.putInt(log.size());
+        for (int i = 0; i < log.size(); i++) {
+            out.put(log.type(i));
+            out.putLong(log.timestamp(i));
+            out.putLong(log.id(i));
+            out.putLong(log.amountCents(i));
+        }
+    }
+
+    // Every length and count is checked against the bytes left, so a corrupt record fails with an
+    // IOException instead of a huge allocation or a buffer underflow
+    public static BankAccount decode(ByteBuffer in) throws IOException {
+        require(in, 1 + 4 + 2);
+        byte tag = in.get();
+        int accountNumber = in.getInt();
+        byte[] holder = new byte[in.getShort() & 0xFFFF];
+        require(in, holder.length + 8);
+        in.get(holder);
+        String accountHolder = new String(holder, StandardCharsets.UTF_8);
+        double balance = in.getDouble();
+        double first = 0;
+        double second = 0;
+        int months = 0;
+        int payments = 0;
+        if (tag == SAVINGS) {
+            require(in, 8 + 4);
+            first = in.getDouble();
+            months = in.getInt();
+        } else if (tag == CHECKING) {
+            require(in, 8);
+            first = in.getDouble();
+        } else if (tag == LOAN_MORTGAGE) {
+            require(in, 8 + 8 + 4 + 4);
+            first = in.getDouble();
+            second = in.getDouble();
+            months = in.getInt();
+            payments = in.getInt();
+        } else if (tag != PLAIN) {
+            throw new IOException("Unknown account type tag " + tag);
+        }
+        require(in, 4);
+        int segmentCount = in.getInt();
+        requireCount(in, segmentCount, SEGMENT_BYTES);
+        SegmentTable segments = new SegmentTable();
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(in.getLong(), in.getInt(), in.getLong(), in.getLong(), in.getLong());
+        }
+        require(in, 4);
+        int entryCount = in.getInt();
+        requireCount(in, entryCount, ENTRY_BYTES);
+        TransactionLog log = new TransactionLog(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            byte type = in.get();
+            if (!TransactionLog.isKnownType(type)) {
+                throw new IOException("Unknown transaction type " + type + " in account " + accountNumber);
+            }
+            log.append(type, in.getLong(), in.getLong(), in.getLong());
+        }
+        switch (tag) {
+            case SAVINGS:
+                return new SavingsAccount(accountNumber, accountHolder, balance, log, segments, first, months);
+            case CHECKING:
+                return new CheckingAccount(accountNumber, accountHolder, balance, log, segments, first);
+            case LOAN_MORTGAGE:
+                return new LoanMortgageAccount(accountNumber, accountHolder, balance, log, segments, first, second, months, payments);
+            default:
+                return new BankAccount(accountNumber, accountHolder, balance, log, segments);
+        }
+    }
+
+    private static void require(ByteBuffer in, int bytes) throws IOException {
+        if (in.remaining() < bytes) {
+            throw new IOException("Account record truncated");
+        }
+    }
+
+    private static void requireCount(ByteBuffer in, int count, int bytesEach) throws IOException {
+        if (count < 0 || count > in.remaining() / bytesEach) {
+            throw new IOException("Corrupt account record: count " + count);
+        }
+    }
+
+    public static void writeSnapshot(Path path, Collection<BankAccount> accounts, long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            CRC32 crc = new CRC32();
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putLong(generation);
+            buffer.putInt(accounts.size());
+            for (BankAccount account : accounts) {
+                int size = encodedSize(account);
+                if (buffer.remaining() < 4 + size) {
+                    flush(channel, buffer, crc);
+                }
+                if (buffer.capacity() < 4 + size) {
+                    buffer = ByteBuffer.allocateDirect(4 + size);
+                }
+                buffer.putInt(size);
+                encode(account, buffer);
+            }
+            flush(channel, buffer, crc);
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    public static Snapshot readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+            CRC32 crc = new CRC32();
+            buffer = fill(channel, buffer, 4 + 2 + 8 + 4);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an account snapshot: " + path);
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported account snapshot version " + version);
+            }
+            long generation = buffer.getLong();
+            int count = buffer.getInt();
+            updateCrc(crc, buffer, 0, 4 + 2 + 8 + 4);
+            long fileSize = channel.size();
+            if (count < 0 || count > (fileSize - (4 + 2 + 8 + 4 + 8)) / (4 + MIN_ACCOUNT_BYTES)) {
+                throw new IOException("Corrupt account snapshot " + path + ": account count " + count);
+            }
+            List<BankAccount> accounts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                buffer = fill(channel, buffer, 4);
+                int size = buffer.getInt(buffer.position());
+                long unread = fileSize - (channel.position() - buffer.remaining());
+                if (size < MIN_ACCOUNT_BYTES || size > unread - 4 - 8) {
+                    throw new IOException("Corrupt account snapshot " + path + ": record size " + size);
+                }
+                buffer = fill(channel, buffer, 4 + size);
+                int start = buffer.position();
+                ByteBuffer record = buffer.duplicate();
+                record.position(start + 4);
+                record.limit(start + 4 + size);
+                accounts.add(decode(record));
+                if (record.hasRemaining()) {
+                    throw new IOException("Corrupt account snapshot " + path + ": record " + i + " has trailing bytes");
+                }
+                updateCrc(crc, buffer, start, 4 + size);
+                buffer.position(start + 4 + size);
+            }
+            buffer = fill(channel, buffer, 8);
+            if (buffer.getLong() != crc.getValue()) {
+                throw new IOException("Account snapshot checksum mismatch: " + path);
+            }
+            return new Snapshot(generation, accounts);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Makes at least n unread bytes available, growing the buffer if one record needs more room
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int n) throws IOException {
+        if (buffer.remaining() >= n) {
+            return buffer;
+        }
+        if (buffer.capacity() < n) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(n);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < n) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Account snapshot truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void updateCrc(CRC32 crc, ByteBuffer buffer, int start, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(start);
+        slice.limit(start + length);
+        crc.update(slice);
+    }
+}
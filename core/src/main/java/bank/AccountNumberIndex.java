@@ -0,0 +1,28 @@
+package bank;
+
+import java.util.logging.Logger;
+
+class AccountNumberIndex {
+    private static final Logger LOG = Logger.getLogger(AccountNumberIndex.class.getName());
+    private final IntObjectMap<BankAccount> accounts = new IntObjectMap<>();
+
+    public BankAccount get(int accountNumber) {
+        return accounts.get(accountNumber);
+    }
+
+    // Callers check the number is free first; only snapshots from before numbers were allocated
+    // (when every registration got 123) still share one
+    public void add(BankAccount account) {
+        BankAccount displaced = accounts.put(account.getAccountNumber(), account);
+        if (displaced != null && displaced != account && !displaced.getAccountHolder().equals(account.getAccountHolder())) {
+            LOG.warning("Account number " + account.getAccountNumber() + " is shared by " + displaced.getAccountHolder()
+                    + " and " + account.getAccountHolder() + "; lookups by number find " + account.getAccountHolder());
+        }
+    }
+
+    public void remove(BankAccount account) {
+        if (accounts.get(account.getAccountNumber()) == account) {
+            accounts.remove(account.getAccountNumber());
+        }
+    }
+}
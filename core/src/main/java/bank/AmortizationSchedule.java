@@ -0,0 +1,42 @@
+package bank;
+
+// Month-by-month breakdown of a level-payment loan, in primitive arrays indexed by payment number
+class AmortizationSchedule {
+    private final double payment;
+    private final double[] interest;
+    private final double[] principal;
+    private final double[] balance; // owed after each payment
+
+    AmortizationSchedule(AmortizationTable table, double loanPrincipal) {
+        int months = table.getTermMonths();
+        this.payment = table.payment(loanPrincipal);
+        this.interest = new double[months];
+        this.principal = new double[months];
+        this.balance = new double[months];
+        for (int k = 0; k < months; k++) {
+            interest[k] = table.interestDue(loanPrincipal, k);
+            principal[k] = payment - interest[k];
+            balance[k] = table.balanceAfter(loanPrincipal, k + 1);
+        }
+    }
+
+    public int size() {
+        return balance.length;
+    }
+
+    public double payment() {
+        return payment;
+    }
+
+    public double interest(int month) {
+        return interest[month];
+    }
+
+    public double principal(int month) {
+        return principal[month];
+    }
+
+    public double balance(int month) {
+        return balance[month];
+    }
+}
@@ -0,0 +1,102 @@
+package bank;
+
+// Closed-form amortization for every loan with a given monthly rate and term. The powers (1 + r)^k
+// are computed once and shared by all loans on the same terms, so a payment, a balance after any
+// number of payments or a payoff quote costs a multiplication instead of a Math.pow. The most
+// recently used tables are kept, up to CACHE_SIZE of them.
+class AmortizationTable {
+    public static final int CACHE_SIZE = Integer.getInteger("bank.amortizationTables", 1024);
+    private static final LruCache<Terms, AmortizationTable> cache = new LruCache<>(CACHE_SIZE);
+
+    private final double monthlyRate;
+    private final int termMonths;
+    private final double[] growth; // (1 + r)^k for k = 0 .. termMonths
+    private final double paymentFactor; // level payment per unit of principal
+
+    private AmortizationTable(double monthlyRate, int termMonths) {
+        this.monthlyRate = monthlyRate;
+        this.termMonths = termMonths;
+        this.growth = new double[termMonths + 1];
+        growth[0] = 1;
+        for (int k = 1; k <= termMonths; k++) {
+            growth[k] = growth[k - 1] * (1 + monthlyRate);
+        }
+        double total = growth[termMonths];
+        this.paymentFactor = monthlyRate == 0 ? 1.0 / termMonths : monthlyRate * total / (total - 1);
+    }
+
+    public static AmortizationTable forLoan(double annualRate, int termMonths) {
+        if (termMonths <= 0) {
+            throw new IllegalArgumentException("Loan term must be at least one month: " + termMonths);
+        }
+        Terms key = new Terms(annualRate, termMonths);
+        AmortizationTable table = cache.get(key);
+        if (table == null) {
+            // Two callers may both build it; either table is correct and the cache keeps the later one
+            table = new AmortizationTable(annualRate / 12, termMonths);
+            cache.put(key, table);
+        }
+        return table;
+    }
+
+    private static final class Terms {
+        final long annualRateBits;
+        final int termMonths;
+
+        Terms(double annualRate, int termMonths) {
+            this.annualRateBits = Double.doubleToLongBits(annualRate);
+            this.termMonths = termMonths;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Terms && ((Terms) other).annualRateBits == annualRateBits && ((Terms) other).termMonths == termMonths;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(annualRateBits) * 31 + termMonths;
+        }
+    }
+
+    public double getMonthlyRate() {
+        return monthlyRate;
+    }
+
+    public int getTermMonths() {
+        return termMonths;
+    }
+
+    public double payment(double principal) {
+        return principal * paymentFactor;
+    }
+
+    // Principal still owed once the given number of scheduled payments has been made
+    public double balanceAfter(double principal, int payments) {
+        if (payments >= termMonths) {
+            return 0;
+        }
+        if (monthlyRate == 0) {
+            return principal * (termMonths - payments) / termMonths;
+        }
+        return principal * (growth[termMonths] - growth[Math.max(0, payments)]) / (growth[termMonths] - 1);
+    }
+
+    // Interest charged with the (payments + 1)th scheduled payment
+    public double interestDue(double principal, int payments) {
+        return balanceAfter(principal, payments) * monthlyRate;
+    }
+
+    // Amount that settles the loan at the next due date after the given number of payments
+    public double payoffQuote(double principal, int payments) {
+        return balanceAfter(principal, payments) * (1 + monthlyRate);
+    }
+
+    public double totalInterest(double principal) {
+        return payment(principal) * termMonths - principal;
+    }
+
+    public AmortizationSchedule schedule(double principal) {
+        return new AmortizationSchedule(this, principal);
+    }
+}
@@ -0,0 +1,120 @@
+package bank;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+// Balances of every account as of one instant, e.g. the close of a business day for a regulatory
+// report. Each account's balance comes from BankAccount.balanceCentsAsOf, and accounts are split
+// across a fork-join pool, so the report costs a segment read per account rather than a replay.
+class BalanceReport {
+    public static final int LEAF_SIZE = 1024;
+
+    public final long asOfMillis;
+    public final int[] accountNumbers; // ascending
+    public final String[] holders;
+    public final long[] balanceCents;
+    public final long totalCents;
+    public final long elapsedMillis;
+
+    private BalanceReport(long asOfMillis, int[] accountNumbers, String[] holders, long[] balanceCents, long elapsedMillis) {
+        this.asOfMillis = asOfMillis;
+        this.accountNumbers = accountNumbers;
+        this.holders = holders;
+        this.balanceCents = balanceCents;
+        long total = 0;
+        for (long cents : balanceCents) {
+            total += cents;
+        }
+        this.totalCents = total;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // Last millisecond of the given day in the given zone
+    public static long endOfDay(LocalDate day, ZoneId zone) {
+        return day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+    }
+
+    public static BalanceReport asOf(BankAccountManager manager, long millis) {
+        return asOf(manager, millis, ForkJoinPool.commonPool());
+    }
+
+    public static BalanceReport asOf(BankAccountManager manager, final long millis, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        List<BankAccount> accounts = manager.getAccounts();
+        Collections.sort(accounts, new Comparator<BankAccount>() {
+            @Override
+            public int compare(BankAccount a, BankAccount b) {
+                return Integer.compare(a.getAccountNumber(), b.getAccountNumber());
+            }
+        });
+        final BankAccount[] sorted = accounts.toArray(new BankAccount[0]);
+        final long[] balances = new long[sorted.length];
+        pool.invoke(new Partition(sorted, balances, millis, 0, sorted.length));
+        int[] numbers = new int[sorted.length];
+        String[] holders = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            numbers[i] = sorted[i].getAccountNumber();
+            holders[i] = sorted[i].getAccountHolder();
+        }
+        return new BalanceReport(millis, numbers, holders, balances, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public int size() {
+        return accountNumbers.length;
+    }
+
+    public void writeCsv(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("account_number,account_holder,balance_as_of_" + Instant.ofEpochMilli(asOfMillis));
+            writer.newLine();
+            for (int i = 0; i < accountNumbers.length; i++) {
+                writer.write(accountNumbers[i] + ",\"" + holders[i].replace("\"", "\"\"") + "\"," + TransactionLog.toAmount(balanceCents[i]));
+                writer.newLine();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Balances of " + accountNumbers.length + " accounts as of " + Instant.ofEpochMilli(asOfMillis) + ": total "
+                + TransactionLog.toAmount(totalCents) + " in " + elapsedMillis + " ms";
+    }
+
+    private static class Partition extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BankAccount[] accounts;
+        private final long[] balances;
+        private final long millis;
+        private final int from;
+        private final int to;
+
+        Partition(BankAccount[] accounts, long[] balances, long millis, int from, int to) {
+            this.accounts = accounts;
+            this.balances = balances;
+            this.millis = millis;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Partition(accounts, balances, millis, from, middle), new Partition(accounts, balances, millis, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                balances[i] = accounts[i].balanceCentsAsOf(millis);
+            }
+        }
+    }
+}
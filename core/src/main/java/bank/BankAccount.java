@@ -0,0 +1,409 @@
+package bank;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class BankAccount implements Serializable{
+    private static final long serialVersionUID = -3077402155466201679L;
+    private static final Logger LOG = Logger.getLogger(BankAccount.class.getName());
+    protected int accountNumber;
+    protected String accountHolder;
+    protected volatile double balance;
+    // Not serialized: accounts are saved with AccountCodec, and readObject only reads old .ser files
+    protected transient TransactionLog transactionLog; // recent entries not yet sealed into a segment
+    protected transient SegmentTable segments;
+    protected transient TransactionJournal journal;
+    protected transient HistorySegmentStore segmentStore;
+    protected transient CheckpointCut checkpointCut;
+    transient long capturedGeneration; // last checkpoint generation this account's state went into; see CheckpointCut
+
+    public BankAccount(int accountNumber, String accountHolder) {
+        this.accountNumber = accountNumber;
+        this.accountHolder = accountHolder;
+        this.balance = 0;
+        this.transactionLog = new TransactionLog();
+        this.segments = new SegmentTable();
+    }
+
+    public BankAccount(int accountNumber, String accountHolder, int balance) {
+        this.accountNumber = accountNumber;
+        this.accountHolder = accountHolder;
+        this.balance = balance;
+        this.transactionLog = new TransactionLog();
+        this.segments = new SegmentTable();
+        this.transactionLog.append(TransactionLog.INITIAL, System.currentTimeMillis(), TransactionIdGenerator.next(), TransactionLog.toCents(balance));
+    }
+
+    // Rebuilds an account from stored state without recording anything; see AccountCodec
+    BankAccount(int accountNumber, String accountHolder, double balance, TransactionLog transactionLog, SegmentTable segments) {
+        this.accountNumber = accountNumber;
+        this.accountHolder = accountHolder;
+        this.balance = balance;
+        this.transactionLog = transactionLog;
+        this.segments = segments;
+    }
+
+    public int getAccountNumber() {
+        return accountNumber;
+    }
+
+    public String getAccountHolder() {
+        return accountHolder;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    // Detached, read-only state for a background snapshot; the stripe lock must be held
+    BankAccount copyForSnapshot() {
+        return new BankAccount(accountNumber, accountHolder, balance, transactionLog.snapshot(), segments.snapshot());
+    }
+
+    // Loads the whole history; prefer openHistory or getRecentTransactions for long histories
+    public List<Transaction> getTransactions() {
+        return getTransactions(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public List<Transaction> getTransactions(long fromMillis, long toMillis) {
+        List<Transaction> transactions = new ArrayList<>();
+        HistoryCursor cursor = openHistory(fromMillis, toMillis);
+        while (cursor.next()) {
+            transactions.add(cursor.transaction());
+        }
+        return transactions;
+    }
+
+    public List<Transaction> getRecentTransactions(int count) {
+        HistoryCursor cursor;
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            int total = segments.totalEntries() + transactionLog.size();
+            cursor = new HistoryCursor(segmentStore, segments.snapshot(), transactionLog.snapshot(), Long.MIN_VALUE, Long.MAX_VALUE, Math.max(0, total - count));
+        } finally {
+            lock.unlock();
+        }
+        List<Transaction> transactions = new ArrayList<>(count);
+        while (cursor.next()) {
+            transactions.add(cursor.transaction());
+        }
+        return transactions;
+    }
+
+    // Up to limit transactions within [fromMillis, toMillis], after passing over the first offset of them.
+    // Without a time range whole segments are skipped unread.
+    public List<Transaction> getTransactionPage(long fromMillis, long toMillis, int offset, int limit) {
+        boolean wholeHistory = fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE;
+        HistoryCursor cursor;
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            cursor = new HistoryCursor(segmentStore, segments.snapshot(), transactionLog.snapshot(), fromMillis, toMillis, wholeHistory ? offset : 0);
+        } finally {
+            lock.unlock();
+        }
+        int skipped = wholeHistory ? offset : 0;
+        List<Transaction> page = new ArrayList<>(Math.min(limit, 1024));
+        while (page.size() < limit && cursor.next()) {
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(cursor.transaction());
+            }
+        }
+        return page;
+    }
+
+    // Cursor over the transactions timestamped within [fromMillis, toMillis], oldest first. It sees
+    // the history as of this call and loads sealed segments only as it reaches them.
+    public HistoryCursor openHistory(long fromMillis, long toMillis) {
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            return new HistoryCursor(segmentStore, segments.snapshot(), transactionLog.snapshot(), fromMillis, toMillis, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTransactionCount() {
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            return segments.totalEntries() + transactionLog.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getBalanceAsOf(long millis) {
+        return TransactionLog.toAmount(balanceCentsAsOf(millis));
+    }
+
+    // Balance including every transaction timestamped at or before millis. It starts from the closing
+    // balance of the first segment reaching past millis, or the current balance if none does, and takes
+    // back that segment's (or the tail's) later entries: a binary search and at most one segment read.
+    // When entries were appended out of time order and a later segment or the tail holds one at or
+    // before millis, it instead takes back every later entry from the current balance.
+    public long balanceCentsAsOf(long millis) {
+        SegmentTable segments;
+        TransactionLog tail;
+        long balanceCents;
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            segments = this.segments.snapshot();
+            tail = transactionLog.snapshot();
+            balanceCents = TransactionLog.toCents(balance);
+        } finally {
+            lock.unlock();
+        }
+        int index = segments.firstAfter(millis);
+        long tailAfter = tail.signedSumAfter(0, tail.size(), millis);
+        if (index == segments.size()) {
+            return balanceCents - tailAfter;
+        }
+        try {
+            if (!segments.allAfter(index + 1, millis) || (tail.size() > 0 && tail.minTimestamp(0, tail.size()) <= millis)) {
+                // Segments before index hold nothing after millis, so only the rest need reading
+                long later = tailAfter;
+                for (int i = index; i < segments.size(); i++) {
+                    TransactionLog segment = segmentStore.read(segments.offset(i));
+                    later += segment.signedSumAfter(0, segment.size(), millis);
+                }
+                return balanceCents - later;
+            }
+            long closing = segments.closingBalance(index);
+            TransactionLog segment = segmentStore.read(segments.offset(index));
+            return closing - segment.signedSumAfter(0, segment.size(), millis);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading history segment", e);
+        }
+    }
+
+    // Moves every full segment's worth of the in-memory tail into the segment store
+    protected boolean sealFullSegments() {
+        if (segmentStore == null || transactionLog.size() < HistorySegmentStore.SEGMENT_SIZE) {
+            return false;
+        }
+        TransactionLog log = transactionLog;
+        int sealed = 0;
+        // The balance already includes every entry in the tail; take back those after each segment
+        long pending = log.signedSum(0, log.size());
+        long balanceCents = TransactionLog.toCents(balance);
+        try {
+            while (log.size() - sealed >= HistorySegmentStore.SEGMENT_SIZE) {
+                int end = sealed + HistorySegmentStore.SEGMENT_SIZE;
+                long offset = segmentStore.write(log, sealed, end);
+                pending -= log.signedSum(sealed, end);
+                segments.add(offset, end - sealed, log.minTimestamp(sealed, end), log.maxTimestamp(sealed, end), balanceCents - pending);
+                sealed = end;
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error sealing history segment", e);
+        }
+        if (sealed > 0) {
+            // A fresh tail, so snapshots already handed out keep seeing the old one unchanged
+            transactionLog = log.copyOfRange(sealed, log.size());
+        }
+        return sealed > 0;
+    }
+
+    // Lock guarding this account's balance and history; see Ledger
+    protected ReentrantLock stripeLock() {
+        return Ledger.STRIPES.forAccount(accountNumber);
+    }
+
+    // Must be called with the stripe lock held, before the balance or history changes
+    protected void beforeChange() {
+        if (checkpointCut != null) {
+            checkpointCut.capture(this);
+        }
+    }
+
+    public void deposit(double amount) {
+        long start = System.nanoTime();
+        boolean done = false;
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            recordTransaction(TransactionLog.DEPOSIT, TransactionLog.toCents(amount));
+            done = true;
+        } finally {
+            lock.unlock();
+            BankMetrics.DEPOSIT.record(start, done);
+        }
+    }
+
+    // The futures complete with the same result once the change is durable, or fail with the
+    // IOException if it could not be journaled; see Durability
+    public CompletableFuture<Void> deposit(double amount, Durability durability) {
+        try {
+            deposit(amount);
+        } catch (UncheckedIOException e) {
+            return failedWrite(e);
+        }
+        return whenDurable(null, durability);
+    }
+
+    public CompletableFuture<Boolean> withdraw(double amount, Durability durability) {
+        boolean withdrawn;
+        try {
+            withdrawn = withdraw(amount);
+        } catch (UncheckedIOException e) {
+            return failedWrite(e);
+        }
+        return whenDurable(withdrawn, durability);
+    }
+
+    static <T> CompletableFuture<T> failedWrite(UncheckedIOException e) {
+        CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(e.getCause());
+        return failed;
+    }
+
+    protected <T> CompletableFuture<T> whenDurable(T result, Durability durability) {
+        TransactionJournal journal = this.journal;
+        return journal == null ? CompletableFuture.completedFuture(result) : journal.whenDurable(result, durability);
+    }
+
+    // Declined withdrawals count as errors in BankMetrics
+    public boolean withdraw(double amount) {
+        long start = System.nanoTime();
+        boolean done = false;
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            long cents = TransactionLog.toCents(amount);
+            if (allowsWithdrawal(cents)) {
+                recordTransaction(TransactionLog.WITHDRAWL, cents);
+                done = true;
+                return true;
+            } else {
+                LOG.fine("Insufficient funds in account " + accountNumber);
+                return false;
+            }
+        } finally {
+            lock.unlock();
+            BankMetrics.WITHDRAW.record(start, done);
+        }
+    }
+
+    // Returns whether attaching moved part of the history into segments
+    boolean attach(TransactionJournal journal, HistorySegmentStore segmentStore, CheckpointCut checkpointCut) {
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            this.journal = journal;
+            this.segmentStore = segmentStore;
+            this.checkpointCut = checkpointCut;
+            // Journaled in the current generation, so only checkpoints after it capture this account
+            this.capturedGeneration = checkpointCut.generation();
+            return sealFullSegments();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Journals a transaction and then applies it, so a failed write throws with the account left
+    // untouched, as Ledger.transfer does. Must be called with the stripe lock held.
+    protected void recordTransaction(byte type, long amountCents) {
+        long timestamp = System.currentTimeMillis();
+        long id = TransactionIdGenerator.next();
+        if (journal != null) {
+            try {
+                journal.appendEntry(this, type, timestamp, id, amountCents);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error journaling transaction on account " + accountNumber, e);
+            }
+        }
+        beforeChange();
+        applyTransaction(type, amountCents);
+        record(type, timestamp, id, amountCents);
+    }
+
+    // Applies a journaled transaction's amount; subclasses that track more than the balance override it
+    void applyTransaction(byte type, long amountCents) {
+        double amount = TransactionLog.toAmount(amountCents);
+        balance += TransactionLog.isCredit(type) ? amount : -amount;
+    }
+
+    // Whether withdraw would accept this amount; subclasses with other limits override it
+    boolean allowsWithdrawal(long amountCents) {
+        return TransactionLog.toAmount(amountCents) <= balance;
+    }
+
+    // Transaction type that withdraw records
+    byte withdrawalType() {
+        return TransactionLog.WITHDRAWL;
+    }
+
+    // Applies a transaction that the caller has already validated and journals itself, as
+    // TransferPipeline does for a whole batch. Must be called with the stripe lock held.
+    void settle(byte type, long timestamp, long id, long amountCents) {
+        moveBalance(type, amountCents);
+        record(type, timestamp, id, amountCents);
+    }
+
+    // The two halves of settle, for a caller that has to check a whole batch against the moved
+    // balances before journaling it. moveBalance returns the balance it replaced, which
+    // restoreBalance puts back if the journal write fails. Both need the stripe lock.
+    double moveBalance(byte type, long amountCents) {
+        beforeChange();
+        double previous = balance;
+        double amount = TransactionLog.toAmount(amountCents);
+        balance += TransactionLog.isCredit(type) ? amount : -amount;
+        return previous;
+    }
+
+    void restoreBalance(double previous) {
+        balance = previous;
+    }
+
+    void record(byte type, long timestamp, long id, long amountCents) {
+        transactionLog.append(type, timestamp, id, amountCents);
+        sealFullSegments();
+    }
+
+    // Re-applies a journaled transaction during recovery without journaling it again
+    void replayTransaction(Transaction transaction) {
+        if (transaction.getType() == TransactionLog.DEPOSIT || transaction.getType() == TransactionLog.INTEREST) {
+            balance += transaction.getAmount();
+        } else if (transaction.getType() == TransactionLog.WITHDRAWL || transaction.getType() == TransactionLog.WITHDRAW) {
+            balance -= transaction.getAmount();
+        }
+        transactionLog.append(transaction);
+        sealFullSegments();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        accountNumber = fields.get("accountNumber", 0);
+        accountHolder = (String) fields.get("accountHolder", null);
+        balance = fields.get("balance", 0.0);
+        // Saved before TransactionLog existed: convert the old list of Transaction objects
+        List<?> legacyHistory = (List<?>) fields.get("transactionHistory", null);
+        transactionLog = new TransactionLog(legacyHistory == null ? 8 : legacyHistory.size());
+        if (legacyHistory != null) {
+            for (Object transaction : legacyHistory) {
+                try {
+                    transactionLog.append(((Transaction) transaction).upgrade());
+                } catch (IllegalArgumentException e) {
+                    InvalidObjectException invalid = new InvalidObjectException("Bad transaction in saved history");
+                    invalid.initCause(e);
+                    throw invalid;
+                }
+            }
+        }
+        segments = new SegmentTable();
+    }
+}
@@ -0,0 +1,544 @@
+package bank;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class BankAccountManager {
+    private static final Logger LOG = Logger.getLogger(BankAccountManager.class.getName());
+    public static final String DEFAULT_FILE_PATH = "accountDetails.ser";
+    public static final int DEFAULT_SEGMENT_CACHE_SIZE = 1024;
+
+    // Rewrite the snapshot once the journal outgrows it, so compaction stays amortized O(1) per operation
+    private static final long MIN_JOURNAL_BYTES = 64 * 1024;
+    // A snapshot is also taken this often while anything has been journaled since the last one
+    public static final long SNAPSHOT_INTERVAL_SECONDS = Long.getLong("bank.snapshotIntervalSeconds", 60);
+
+    // One daemon thread writes snapshots for every manager in the process
+    private static final ScheduledExecutorService snapshotWriter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final Map<String, BankAccountManager> sharedManagers = new HashMap<>();
+
+    private ConcurrentHashMap<String, BankAccount> accountMap; // Map username to BankAccount
+    private String filePath;
+    private long snapshotGeneration;
+    private volatile long snapshotBytes;
+    private boolean legacySnapshot;
+    private ShardedSnapshotStore shardedStore; // null while the snapshot is a single file
+    private TransactionJournal journal;
+    private HistorySegmentStore segmentStore;
+    private final CheckpointCut cut = new CheckpointCut();
+    private AccountNumberIndex accountNumberIndex = new AccountNumberIndex();
+    // Guards the indexes and account replacement; always taken before any account stripe lock
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final Object checkpointLock = new Object();
+    private final AtomicBoolean checkpointPending = new AtomicBoolean();
+    // Next account number to hand out; always above every number in use
+    private final AtomicInteger nextAccountNumber = new AtomicInteger(1);
+    private ScheduledFuture<?> periodicSnapshots;
+
+    // Every screen shares one manager per file, so the account map is loaded once and stays resident
+    public static synchronized BankAccountManager getShared(String filePath) {
+        String key = new File(filePath).toPath().toAbsolutePath().normalize().toString();
+        BankAccountManager manager = sharedManagers.get(key);
+        if (manager == null) {
+            manager = new BankAccountManager(filePath);
+            sharedManagers.put(key, manager);
+        }
+        return manager;
+    }
+
+    public BankAccountManager(String filePath) {
+        this(filePath, DEFAULT_SEGMENT_CACHE_SIZE);
+    }
+
+    public BankAccountManager(String filePath, int segmentCacheSize) {
+        this.filePath = filePath;
+        this.accountMap = new ConcurrentHashMap<>(loadAccountMap());
+        this.journal = new TransactionJournal(filePath + ".journal");
+        try {
+            int replayed = journal.recover(accountMap, snapshotGeneration);
+            if (replayed > 0) {
+                LOG.info("Replayed " + replayed + " journal records");
+            }
+        } catch (IOException e) {
+            // Starting without part of the journal would lose or double money, so refuse to start at all
+            try {
+                journal.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw new UncheckedIOException("Error replaying journal " + filePath + ".journal", e);
+        }
+        try {
+            segmentStore = new HistorySegmentStore(filePath + ".segments", segmentCacheSize);
+        } catch (IOException e) {
+            // Without a segment file every history simply stays in memory
+            LOG.log(Level.WARNING, "Error opening history segment file", e);
+        }
+        boolean sealed = false;
+        for (BankAccount account : accountMap.values()) {
+            sealed |= account.attach(journal, segmentStore, cut);
+            accountNumberIndex.add(account);
+            reserveAccountNumber(account.getAccountNumber());
+        }
+        // Rewrite snapshots from older versions straight away: histories loaded in full were just
+        // moved into segments, and a Java-serialized snapshot is converted to AccountCodec form
+        if (sealed || legacySnapshot) {
+            checkpoint();
+            legacySnapshot = false;
+        }
+        periodicSnapshots = snapshotWriter.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (journal.size() > TransactionJournal.HEADER_SIZE) {
+                    checkpoint();
+                }
+            }
+        }, SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Completes once the account's record is durable; see Durability
+    public CompletableFuture<Void> saveAccountDetails(BankAccount bankAccount, Durability durability) {
+        saveAccountDetails(bankAccount);
+        return journal.whenDurable(null, durability);
+    }
+
+    // Replaces the holder's account only if it keeps the same number. Fails with IllegalArgumentException
+    // if the holder already has an account under another number, or another holder has this one.
+    public void saveAccountDetails(BankAccount bankAccount) {
+        // Mutations on accounts owned by this manager are already journaled; only new or
+        // replaced accounts need their full state written
+        indexLock.writeLock().lock();
+        try {
+            BankAccount existing = accountMap.get(bankAccount.getAccountHolder());
+            if (existing != bankAccount) {
+                if (existing != null && existing.getAccountNumber() != bankAccount.getAccountNumber()) {
+                    throw new IllegalArgumentException("An account for " + bankAccount.getAccountHolder() + " already exists");
+                }
+                BankAccount numberHolder = accountNumberIndex.get(bankAccount.getAccountNumber());
+                if (numberHolder != null && !numberHolder.getAccountHolder().equals(bankAccount.getAccountHolder())) {
+                    throw new IllegalArgumentException("Account number " + bankAccount.getAccountNumber() + " is already in use");
+                }
+                BankAccount previous = accountMap.put(bankAccount.getAccountHolder(), bankAccount);
+                if (previous != null) {
+                    // The replaced account may still be due in a checkpoint that is walking the map
+                    ReentrantLock previousLock = Ledger.STRIPES.forAccount(previous.getAccountNumber());
+                    previousLock.lock();
+                    try {
+                        cut.capture(previous);
+                    } finally {
+                        previousLock.unlock();
+                    }
+                    accountNumberIndex.remove(previous);
+                }
+                accountNumberIndex.add(bankAccount);
+                reserveAccountNumber(bankAccount.getAccountNumber());
+                ReentrantLock lock = Ledger.STRIPES.forAccount(bankAccount.getAccountNumber());
+                lock.lock();
+                try {
+                    bankAccount.attach(journal, segmentStore, cut);
+                    journal.appendAccount(bankAccount);
+                } catch (IOException e) {
+                    LOG.log(Level.SEVERE, "Error writing journal", e);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        if (journalNeedsCompaction()) {
+            requestCheckpoint();
+        }
+    }
+
+    public int allocateAccountNumber() {
+        return allocateAccountNumbers(1);
+    }
+
+    // Reserves count consecutive unused account numbers and returns the first
+    public int allocateAccountNumbers(int count) {
+        return nextAccountNumber.getAndAdd(count);
+    }
+
+    // Keeps the allocator above numbers that were chosen elsewhere
+    private void reserveAccountNumber(int accountNumber) {
+        int next = nextAccountNumber.get();
+        while (accountNumber >= next && !nextAccountNumber.compareAndSet(next, accountNumber + 1)) {
+            next = nextAccountNumber.get();
+        }
+    }
+
+    // Opens many new accounts at once. They are journaled as one run of RUN_PART records closed by a
+    // RUN_COMMIT, so recovery sees all of them or none, and the future completes once the run is
+    // durable. Fails without opening anything if a holder or account number is already taken.
+    public CompletableFuture<Void> openAccounts(Collection<BankAccount> accounts, Durability durability) throws IOException {
+        return openAccounts(accounts, durability, null);
+    }
+
+    // As above, except that an account whose holder or number is already taken is left out and added
+    // to conflicts instead of failing the batch. The check is made under the index lock, so it also
+    // catches accounts registered while the caller was preparing the batch.
+    public CompletableFuture<Void> openAccounts(Collection<BankAccount> accounts, Durability durability, List<BankAccount> conflicts) throws IOException {
+        synchronized (checkpointLock) {
+            indexLock.writeLock().lock();
+            try {
+                Set<String> holders = new HashSet<>();
+                Set<Integer> numbers = new HashSet<>();
+                List<BankAccount> opening = new ArrayList<>(accounts.size());
+                for (BankAccount account : accounts) {
+                    if (!holders.add(account.getAccountHolder()) || !numbers.add(account.getAccountNumber())) {
+                        throw new IllegalArgumentException("Account " + account.getAccountNumber() + " for " + account.getAccountHolder() + " appears twice");
+                    }
+                    String taken = null;
+                    if (accountMap.containsKey(account.getAccountHolder())) {
+                        taken = "An account for " + account.getAccountHolder() + " already exists";
+                    } else if (accountNumberIndex.get(account.getAccountNumber()) != null) {
+                        taken = "Account number " + account.getAccountNumber() + " is already in use";
+                    }
+                    if (taken == null) {
+                        opening.add(account);
+                    } else if (conflicts == null) {
+                        throw new IllegalArgumentException(taken);
+                    } else {
+                        conflicts.add(account);
+                    }
+                }
+                if (opening.isEmpty()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                accounts = opening;
+                long runId = TransactionIdGenerator.next();
+                ByteArrayOutputStream part = new ByteArrayOutputStream(64 * 1024);
+                DataOutputStream partOut = new DataOutputStream(part);
+                int inPart = 0;
+                for (BankAccount account : accounts) {
+                    TransactionJournal.writeAccount(partOut, account);
+                    if (++inPart == InterestAccrual.LEAF_SIZE) {
+                        journal.appendRunPart(runId, inPart, part);
+                        part.reset();
+                        inPart = 0;
+                    }
+                }
+                if (inPart > 0) {
+                    journal.appendRunPart(runId, inPart, part);
+                }
+                journal.appendRunCommit(runId);
+                for (BankAccount account : accounts) {
+                    accountMap.put(account.getAccountHolder(), account);
+                    accountNumberIndex.add(account);
+                    reserveAccountNumber(account.getAccountNumber());
+                    ReentrantLock lock = Ledger.STRIPES.forAccount(account.getAccountNumber());
+                    lock.lock();
+                    try {
+                        account.attach(journal, segmentStore, cut);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+        }
+        if (journalNeedsCompaction()) {
+            requestCheckpoint();
+        }
+        return journal.whenDurable(null, durability);
+    }
+
+    // Stops periodic snapshots and releases the files; the journal already holds every change
+    public void close() {
+        periodicSnapshots.cancel(false);
+        synchronized (checkpointLock) {
+            try {
+                journal.close();
+                if (segmentStore != null) {
+                    segmentStore.close();
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error closing account files", e);
+            }
+        }
+    }
+
+    // Takes a checkpoint on the snapshot writer thread unless one is already queued
+    public void requestCheckpoint() {
+        if (checkpointPending.compareAndSet(false, true)) {
+            snapshotWriter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    checkpointPending.set(false);
+                    checkpoint();
+                }
+            });
+        }
+    }
+
+    private boolean journalNeedsCompaction() {
+        return journal.size() > Math.max(MIN_JOURNAL_BYTES, snapshotBytes);
+    }
+
+    public int getShardCount() {
+        return shardedStore == null ? 1 : shardedStore.getShardCount();
+    }
+
+    // Switches the snapshot to the given number of shards and checkpoints in the new layout. Meant for
+    // ShardRebalancer, with nothing else using the store.
+    void reshard(int shards) {
+        synchronized (checkpointLock) {
+            shardedStore = new ShardedSnapshotStore(filePath, shards);
+            checkpoint();
+        }
+    }
+
+    TransactionJournal getJournal() {
+        return journal;
+    }
+
+    public List<BankAccount> getAccounts() {
+        return new ArrayList<>(accountMap.values());
+    }
+
+    // Runs the task with no checkpoint able to start, so everything it journals stays in one
+    // journal generation and no snapshot can capture it halfway
+    <T> T runBetweenCheckpoints(Callable<T> task) throws Exception {
+        synchronized (checkpointLock) {
+            return task.call();
+        }
+    }
+
+    // Writes a snapshot of every account and starts a new journal generation. Writers are held only
+    // while the journal is rotated. Each account is then copied as it stood at the rotation, under its
+    // own stripe lock or by the first writer to change it (see CheckpointCut), and the snapshot is
+    // encoded and written with no lock held. Until it is safely on disk the archived journal is kept,
+    // so recovery from the previous snapshot still sees every change.
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            long nextGeneration;
+            indexLock.writeLock().lock();
+            Ledger.STRIPES.lockAll();
+            try {
+                nextGeneration = journal.getGeneration() + 1;
+                journal.rotate(nextGeneration);
+                cut.begin(nextGeneration);
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Error rotating journal", e);
+                return;
+            } finally {
+                Ledger.STRIPES.unlockAll();
+                indexLock.writeLock().unlock();
+            }
+            // Accounts opened since the rotation are skipped by capture, and one replaced since then was
+            // captured by saveAccountDetails before it left the map
+            for (BankAccount account : accountMap.values()) {
+                ReentrantLock lock = Ledger.STRIPES.forAccount(account.getAccountNumber());
+                lock.lock();
+                try {
+                    cut.capture(account);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            List<BankAccount> copies = cut.finish();
+            try {
+                // Segments referenced by the new snapshot must reach the disk before it does
+                if (segmentStore != null) {
+                    segmentStore.force();
+                }
+                long previousGeneration = snapshotGeneration;
+                if (saveAccountMap(copies, nextGeneration)) {
+                    snapshotGeneration = nextGeneration;
+                    // The snapshot before this one is kept as a fallback, along with the journals it needs
+                    journal.discardBefore(previousGeneration);
+                }
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Error writing checkpoint", e);
+            }
+        }
+    }
+
+    public BankAccount getAccount(String username) {
+        return accountMap.get(username);
+    }
+
+    public double getBalance(int accountNumber) {
+        BankAccount account = getAccount(accountNumber);
+        if (account == null) {
+            throw new IllegalArgumentException("No account " + accountNumber);
+        }
+        return account.getBalance();
+    }
+
+    public BankAccount getAccount(int accountNumber) {
+        BankAccount account;
+        indexLock.readLock().lock();
+        try {
+            account = accountNumberIndex.get(accountNumber);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return account;
+    }
+
+    // Looks up count account numbers under a single acquisition of the index lock; missing ones come back null
+    void getAccounts(int[] accountNumbers, int count, BankAccount[] into) {
+        indexLock.readLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                into[i] = accountNumberIndex.get(accountNumbers[i]);
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    private boolean saveAccountMap(Collection<BankAccount> accounts, long generation) {
+        long start = System.nanoTime();
+        boolean saved = shardedStore != null ? writeShards(accounts, generation) : writeAccountMap(accounts, generation);
+        BankMetrics.SAVE_ACCOUNT_MAP.record(start, saved);
+        if (saved) {
+            snapshotBytes = shardedStore != null ? ShardedSnapshotStore.size(filePath) : new File(filePath).length();
+        }
+        return saved;
+    }
+
+    private boolean writeShards(Collection<BankAccount> accounts, long generation) {
+        try {
+            shardedStore.write(accounts, generation);
+            LOG.fine("Account map saved");
+            return true;
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Error saving account map", e);
+            return false;
+        }
+    }
+
+    private boolean writeAccountMap(Collection<BankAccount> accounts, long generation) {
+        // Write to a temporary file first so a crash never leaves a truncated snapshot behind
+        File tempFile = new File(filePath + ".tmp");
+        try {
+            AccountCodec.writeSnapshot(tempFile.toPath(), accounts, generation);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Error saving account map", e);
+            return false;
+        }
+        try {
+            File current = new File(filePath);
+            if (current.exists()) {
+                Files.move(current.toPath(), new File(filePath + ".previous").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(tempFile.toPath(), current.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.fine("Account map saved");
+            return true;
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Error saving account map", e);
+            return false;
+        }
+    }
+
+    // Loads the newest snapshot that reads back intact, falling back to the one before it
+    private Map<String, BankAccount> loadAccountMap() {
+        if (ShardedSnapshotStore.exists(filePath)) {
+            for (String manifestPath : new String[] {filePath + ".shards", filePath + ".shards.previous"}) {
+                if (!new File(manifestPath).exists()) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    AccountCodec.Snapshot snapshot = ShardedSnapshotStore.load(filePath, manifestPath);
+                    BankMetrics.LOAD_ACCOUNT_MAP.record(start, true);
+                    shardedStore = new ShardedSnapshotStore(filePath, ShardedSnapshotStore.shardCountOf(manifestPath));
+                    snapshotGeneration = snapshot.generation;
+                    snapshotBytes = ShardedSnapshotStore.size(filePath);
+                    Map<String, BankAccount> loadedMap = new HashMap<>();
+                    for (BankAccount account : snapshot.accounts) {
+                        loadedMap.put(account.getAccountHolder(), account);
+                    }
+                    LOG.info("Account map loaded from " + shardedStore.getShardCount() + " shard(s)");
+                    return loadedMap;
+                } catch (IOException | RuntimeException e) {
+                    // Any decode failure means a corrupt snapshot, so the previous one is tried next
+                    BankMetrics.LOAD_ACCOUNT_MAP.record(start, false);
+                    LOG.log(Level.WARNING, "Error loading account map from " + manifestPath, e);
+                }
+            }
+        }
+        for (String snapshotPath : new String[] {filePath, filePath + ".previous"}) {
+            if (!new File(snapshotPath).exists()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                Map<String, BankAccount> loadedMap = loadSnapshot(snapshotPath);
+                BankMetrics.LOAD_ACCOUNT_MAP.record(start, true);
+                snapshotBytes = new File(snapshotPath).length();
+                LOG.info("Account map loaded");
+                return loadedMap;
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                BankMetrics.LOAD_ACCOUNT_MAP.record(start, false);
+                LOG.log(Level.WARNING, "Error loading account map from " + snapshotPath, e);
+            }
+        }
+        if (shardedStore == null && !new File(filePath).exists() && (ShardedSnapshotStore.exists(filePath) || ShardedSnapshotStore.DEFAULT_SHARDS > 1)) {
+            // A new store starts out sharded; an existing single-file one keeps its layout until rebalanced
+            int shards = ShardedSnapshotStore.shardCountOf(filePath + ".shards");
+            shardedStore = new ShardedSnapshotStore(filePath, shards > 0 ? shards : ShardedSnapshotStore.DEFAULT_SHARDS);
+        }
+        return new HashMap<>();
+    }
+
+    private Map<String, BankAccount> loadSnapshot(String snapshotPath) throws IOException, ClassNotFoundException {
+        Map<String, BankAccount> loadedMap = new HashMap<>();
+        if (!AccountCodec.isLegacySnapshot(Paths.get(snapshotPath))) {
+            AccountCodec.Snapshot snapshot = AccountCodec.readSnapshot(Paths.get(snapshotPath));
+            for (BankAccount account : snapshot.accounts) {
+                loadedMap.put(account.getAccountHolder(), account);
+            }
+            snapshotGeneration = snapshot.generation;
+            return loadedMap;
+        }
+        // Written by Java serialization before AccountCodec existed; rewritten at the next checkpoint
+        legacySnapshot = true;
+        try (ObjectInputStream inputStream = new LegacyObjectInputStream(new FileInputStream(snapshotPath))) {
+            Object obj = inputStream.readObject();
+            if (obj instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) obj).entrySet()) {
+                    if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof BankAccount)) {
+                        throw new InvalidObjectException("Unexpected entry in account snapshot " + snapshotPath);
+                    }
+                    loadedMap.put((String) entry.getKey(), (BankAccount) entry.getValue());
+                }
+            }
+            try {
+                snapshotGeneration = inputStream.readLong();
+            } catch (EOFException e) {
+                snapshotGeneration = 0; // written before the journal existed
+            }
+        }
+        return loadedMap;
+    }
+}
@@ -0,0 +1,371 @@
+package bank;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// HTTP/JSON front end over BankService, on the JDK's built-in server:
+//   GET  /accounts/{number}                      account summary
+//   GET  /accounts?holder={name}                 account summary by holder
+//   POST /accounts/{number}/deposit  {"amount": 10.5}
+//   POST /accounts/{number}/withdraw {"amount": 10.5}
+//   GET  /accounts/{number}/transactions?offset=0&limit=50[&from=millis&to=millis]
+//   POST /transfers {"from": 1, "to": 2, "amount": 10.5}
+// Request parameters may also be given in the query string. Run with: java -cp core/target/classes bank.BankHttpServer [port]
+class BankHttpServer {
+    private static final Logger LOG = Logger.getLogger(BankHttpServer.class.getName());
+    public static final int DEFAULT_PORT = Integer.getInteger("bank.httpPort", 8080);
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    static {
+        // The server writes headers and body separately; with Nagle's algorithm every response
+        // would then wait out the client's delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final BankService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public BankHttpServer(BankService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = BankService.newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/accounts", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, new Route() {
+                    public String call(HttpExchange exchange, Map<String, String> params) {
+                        return handleAccounts(exchange, params);
+                    }
+                });
+            }
+        });
+        server.createContext("/transfers", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, new Route() {
+                    public String call(HttpExchange exchange, Map<String, String> params) {
+                        return handleTransfer(exchange, params);
+                    }
+                });
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private interface Route {
+        String call(HttpExchange exchange, Map<String, String> params);
+    }
+
+    // A request that cannot be served; carries the HTTP status to answer with
+    static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private String handleAccounts(HttpExchange exchange, Map<String, String> params) {
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        // parts[0] is empty and parts[1] is "accounts"
+        if (parts.length == 2) {
+            requireMethod(exchange, "GET");
+            return accountJson(requireAccount(service.findAccount(requireParam(params, "holder")).join()));
+        }
+        int accountNumber = parseInt(parts[2], "account number");
+        BankAccount account = requireAccount(service.findAccount(accountNumber).join());
+        if (parts.length == 3) {
+            requireMethod(exchange, "GET");
+            return accountJson(account);
+        }
+        String action = parts.length == 4 ? parts[3] : "";
+        if (action.equals("deposit")) {
+            requireMethod(exchange, "POST");
+            boolean done = service.deposit(accountNumber, parseAmount(params)).join();
+            return resultJson(done, account);
+        } else if (action.equals("withdraw")) {
+            requireMethod(exchange, "POST");
+            boolean done = service.withdraw(accountNumber, parseAmount(params)).join();
+            return resultJson(done, account);
+        } else if (action.equals("transactions")) {
+            requireMethod(exchange, "GET");
+            int offset = params.containsKey("offset") ? parseInt(params.get("offset"), "offset") : 0;
+            int limit = params.containsKey("limit") ? parseInt(params.get("limit"), "limit") : 50;
+            if (offset < 0 || limit < 0 || limit > MAX_PAGE_SIZE) {
+                throw new HttpError(400, "offset must be >= 0 and limit between 0 and " + MAX_PAGE_SIZE);
+            }
+            long fromMillis = params.containsKey("from") ? parseLong(params.get("from"), "from") : Long.MIN_VALUE;
+            long toMillis = params.containsKey("to") ? parseLong(params.get("to"), "to") : Long.MAX_VALUE;
+            List<Transaction> page = service.history(accountNumber, fromMillis, toMillis, offset, limit).join();
+            StringBuilder json = new StringBuilder("{\"accountNumber\":").append(accountNumber)
+                    .append(",\"offset\":").append(offset).append(",\"transactions\":[");
+            for (int i = 0; i < page.size(); i++) {
+                Transaction transaction = page.get(i);
+                json.append(i > 0 ? "," : "").append("{\"id\":").append(transaction.getId())
+                        .append(",\"timestamp\":").append(transaction.getTimestamp())
+                        .append(",\"type\":").append(quote(transaction.getDescription()))
+                        .append(",\"amount\":").append(transaction.getAmount()).append('}');
+            }
+            return json.append("]}").toString();
+        }
+        throw new HttpError(404, "Unknown path " + exchange.getRequestURI().getPath());
+    }
+
+    private String handleTransfer(HttpExchange exchange, Map<String, String> params) {
+        requireMethod(exchange, "POST");
+        int from = parseInt(requireParam(params, "from"), "from");
+        int to = parseInt(requireParam(params, "to"), "to");
+        requireAccount(service.findAccount(from).join());
+        requireAccount(service.findAccount(to).join());
+        boolean done = service.transfer(from, to, parseAmount(params)).join();
+        return "{\"ok\":" + done + "}";
+    }
+
+    private void respond(HttpExchange exchange, Route route) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            body = route.call(exchange, readParams(exchange));
+        } catch (HttpError e) {
+            status = e.status;
+            body = errorJson(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = errorJson(e.getMessage());
+        } catch (CompletionException e) {
+            status = e.getCause() instanceof IllegalArgumentException ? 400 : 500;
+            body = errorJson(BankService.messageOf(e));
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Error handling " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), e);
+            status = 500;
+            body = errorJson(e.toString());
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Query parameters, overlaid with the members of a flat JSON object in the body
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        String json = body.toString("UTF-8").trim();
+        if (!json.isEmpty()) {
+            params.putAll(parseFlatObject(json));
+        }
+        return params;
+    }
+
+    // Parses {"name": value, ...} where every value is a number, string, boolean or null
+    static Map<String, String> parseFlatObject(String json) {
+        Map<String, String> members = new HashMap<>();
+        int[] position = {0};
+        expect(json, position, '{');
+        skipWhitespace(json, position);
+        if (position[0] < json.length() && json.charAt(position[0]) == '}') {
+            return members;
+        }
+        while (true) {
+            String name = readString(json, position);
+            expect(json, position, ':');
+            skipWhitespace(json, position);
+            String value;
+            if (position[0] < json.length() && json.charAt(position[0]) == '"') {
+                value = readString(json, position);
+            } else {
+                int start = position[0];
+                while (position[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(position[0])) < 0) {
+                    position[0]++;
+                }
+                value = json.substring(start, position[0]);
+            }
+            members.put(name, value);
+            skipWhitespace(json, position);
+            if (position[0] < json.length() && json.charAt(position[0]) == ',') {
+                position[0]++;
+                continue;
+            }
+            expect(json, position, '}');
+            return members;
+        }
+    }
+
+    private static String readString(String json, int[] position) {
+        expect(json, position, '"');
+        StringBuilder value = new StringBuilder();
+        while (position[0] < json.length()) {
+            char c = json.charAt(position[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\' && position[0] < json.length()) {
+                char escaped = json.charAt(position[0]++);
+                if (escaped == 'u' && position[0] + 4 <= json.length()) {
+                    value.append((char) Integer.parseInt(json.substring(position[0], position[0] + 4), 16));
+                    position[0] += 4;
+                } else {
+                    value.append(escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped == 'r' ? '\r' : escaped);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        throw new HttpError(400, "Unterminated string in request body");
+    }
+
+    private static void expect(String json, int[] position, char expected) {
+        skipWhitespace(json, position);
+        if (position[0] >= json.length() || json.charAt(position[0]) != expected) {
+            throw new HttpError(400, "Malformed JSON request body: expected '" + expected + "' at " + position[0]);
+        }
+        position[0]++;
+    }
+
+    private static void skipWhitespace(String json, int[] position) {
+        while (position[0] < json.length() && Character.isWhitespace(json.charAt(position[0]))) {
+            position[0]++;
+        }
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String accountJson(BankAccount account) {
+        StringBuilder json = new StringBuilder("{\"accountNumber\":").append(account.getAccountNumber())
+                .append(",\"holder\":").append(quote(account.getAccountHolder()))
+                .append(",\"type\":").append(quote(account.getClass().getSimpleName()))
+                .append(",\"balance\":").append(account.getBalance());
+        if (account instanceof SavingsAccount) {
+            json.append(",\"interestRate\":").append(((SavingsAccount) account).getInterestRate());
+        } else if (account instanceof CheckingAccount) {
+            json.append(",\"overdraftLimit\":").append(((CheckingAccount) account).getOverdraftLimit());
+        } else if (account instanceof LoanMortgageAccount) {
+            LoanMortgageAccount loan = (LoanMortgageAccount) account;
+            json.append(",\"loanAmount\":").append(loan.getLoanAmount())
+                    .append(",\"interestRate\":").append(loan.getInterestRate())
+                    .append(",\"loanTermMonths\":").append(loan.getLoanTermMonths())
+                    .append(",\"paymentsMade\":").append(loan.getPaymentsMade());
+        }
+        return json.append(",\"transactionCount\":").append(account.getTransactionCount()).append('}').toString();
+    }
+
+    private static String resultJson(boolean done, BankAccount account) {
+        return "{\"ok\":" + done + ",\"balance\":" + account.getBalance() + "}";
+    }
+
+    private static String errorJson(String message) {
+        return "{\"error\":" + quote(message == null ? "" : message) + "}";
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+            throw new HttpError(405, method + " required");
+        }
+    }
+
+    private static BankAccount requireAccount(BankAccount account) {
+        if (account == null) {
+            throw new HttpError(404, "No such account");
+        }
+        return account;
+    }
+
+    private static String requireParam(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new HttpError(400, "Missing parameter " + name);
+        }
+        return value;
+    }
+
+    private static double parseAmount(Map<String, String> params) {
+        try {
+            return Double.parseDouble(requireParam(params, "amount"));
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "amount must be a number");
+        }
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, name + " must be an integer");
+        }
+    }
+
+    private static long parseLong(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, name + " must be an integer");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        BankHttpServer server = new BankHttpServer(BankService.getShared(), port);
+        server.start();
+        System.out.println("Bank HTTP server listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,80 @@
+package bank;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// The instrumented operations. Each is registered with the platform MBean server as
+// bank:type=Operation,name=<operation>, and a table of all of them is logged at INFO every
+// bank.metricsDumpSeconds (0 turns the dump off).
+class BankMetrics {
+    private static final Logger LOG = Logger.getLogger(BankMetrics.class.getName());
+    public static final long DUMP_INTERVAL_SECONDS = Long.getLong("bank.metricsDumpSeconds", 60);
+
+    public static final OperationMetrics DEPOSIT = new OperationMetrics("deposit");
+    public static final OperationMetrics WITHDRAW = new OperationMetrics("withdraw");
+    public static final OperationMetrics LOAN_PAYMENT = new OperationMetrics("makeLoanPayment");
+    public static final OperationMetrics SAVE_ACCOUNT_MAP = new OperationMetrics("saveAccountMap");
+    public static final OperationMetrics LOAD_ACCOUNT_MAP = new OperationMetrics("loadAccountMap");
+    public static final OperationMetrics CREDENTIAL_CHECK = new OperationMetrics("credentialCheck");
+    private static final OperationMetrics[] ALL = {DEPOSIT, WITHDRAW, LOAN_PAYMENT, SAVE_ACCOUNT_MAP, LOAD_ACCOUNT_MAP, CREDENTIAL_CHECK};
+
+    static {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics metrics : ALL) {
+            try {
+                ObjectName objectName = new ObjectName("bank:type=Operation,name=" + metrics.getName());
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(metrics, objectName);
+                }
+            } catch (JMException e) {
+                LOG.log(Level.WARNING, "Error registering metrics for " + metrics.getName(), e);
+            }
+        }
+        if (DUMP_INTERVAL_SECONDS > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "metrics-dump");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            dumper.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    LOG.info(dump());
+                }
+            }, DUMP_INTERVAL_SECONDS, DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public static OperationMetrics[] all() {
+        return ALL.clone();
+    }
+
+    // One line per operation that has run at least once; latencies in microseconds
+    public static String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-16s %10s %8s %7s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "err%", "mean", "p50", "p99", "p99.9", "max"));
+        for (OperationMetrics metrics : ALL) {
+            LatencyHistogram latency = metrics.getLatency();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            text.append(String.format("%-16s %10d %8d %6.2f%% %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    metrics.getName(), metrics.getCount(), metrics.getErrors(), metrics.getErrorRate() * 100,
+                    latency.getMeanNanos() / 1000, latency.getValueAtQuantile(0.5) / 1000.0, latency.getValueAtQuantile(0.99) / 1000.0,
+                    latency.getValueAtQuantile(0.999) / 1000.0, latency.getMaxNanos() / 1000.0));
+        }
+        return text.toString();
+    }
+}
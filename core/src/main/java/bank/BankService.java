@@ -0,0 +1,302 @@
+package bank;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Headless entry point to the banking operations. Every call returns at once; the work, including
+// waiting for the journal to make it durable, runs on the service's executor, never on the caller's
+// thread. The Swing forms are thin clients of the shared instance.
+class BankService {
+    public static final int POOL_SIZE = Integer.getInteger("bank.serviceThreads", Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+
+    private static BankService shared;
+
+    private final BankAccountManager manager;
+    private final Ledger ledger;
+    private final Durability durability;
+    private final ExecutorService executor;
+    // Set when bank.settlement=pipeline; transfers then go through the ring instead of the stripe locks
+    private final TransferPipeline pipeline;
+
+    public static synchronized BankService getShared() {
+        if (shared == null) {
+            shared = new BankService(BankAccountManager.getShared(BankAccountManager.DEFAULT_FILE_PATH), Durability.BATCHED);
+        }
+        return shared;
+    }
+
+    // The message of a failed service call, without the CompletionException wrapper
+    public static String messageOf(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    public BankService(BankAccountManager manager, Durability durability) {
+        this.manager = manager;
+        this.ledger = new Ledger(manager);
+        this.durability = durability;
+        this.executor = newExecutor();
+        this.pipeline = "pipeline".equals(System.getProperty("bank.settlement")) ? new TransferPipeline(manager, durability) : null;
+    }
+
+    // Virtual threads when the runtime has them, otherwise a fixed pool of daemon threads; tasks
+    // block while their journal records are synced, which virtual threads make cheap
+    static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(POOL_SIZE, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "bank-service-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    public BankAccountManager getManager() {
+        return manager;
+    }
+
+    public CompletableFuture<BankAccount> openAccount(final BankAccount account) {
+        return submit(new Callable<BankAccount>() {
+            @Override
+            public BankAccount call() {
+                manager.saveAccountDetails(account, durability).join();
+                return account;
+            }
+        });
+    }
+
+    // Completes with null when the user has no account
+    public CompletableFuture<BankAccount> findAccount(final String accountHolder) {
+        return submit(new Callable<BankAccount>() {
+            @Override
+            public BankAccount call() {
+                return manager.getAccount(accountHolder);
+            }
+        });
+    }
+
+    // Completes with null when there is no such account
+    public CompletableFuture<BankAccount> findAccount(final int accountNumber) {
+        return submit(new Callable<BankAccount>() {
+            @Override
+            public BankAccount call() {
+                return manager.getAccount(accountNumber);
+            }
+        });
+    }
+
+    public CompletableFuture<Boolean> deposit(final String accountHolder, final double amount) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                checkAmount(amount);
+                requireAccount(accountHolder).deposit(amount, durability).join();
+                return true;
+            }
+        });
+    }
+
+    public CompletableFuture<Boolean> deposit(final int accountNumber, final double amount) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                checkAmount(amount);
+                return ledger.deposit(accountNumber, amount, durability).join();
+            }
+        });
+    }
+
+    // Completes with false when the balance, or overdraft, does not cover the amount
+    public CompletableFuture<Boolean> withdraw(final String accountHolder, final double amount) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                checkAmount(amount);
+                return requireAccount(accountHolder).withdraw(amount, durability).join();
+            }
+        });
+    }
+
+    public CompletableFuture<Boolean> withdraw(final int accountNumber, final double amount) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                checkAmount(amount);
+                return ledger.withdraw(accountNumber, amount, durability).join();
+            }
+        });
+    }
+
+    public CompletableFuture<Boolean> transfer(final int fromAccountNumber, final int toAccountNumber, final double amount) {
+        if (pipeline != null) {
+            try {
+                checkAmount(amount);
+            } catch (IllegalArgumentException e) {
+                CompletableFuture<Boolean> invalid = new CompletableFuture<>();
+                invalid.completeExceptionally(e);
+                return invalid;
+            }
+            return pipeline.transfer(fromAccountNumber, toAccountNumber, amount);
+        }
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                checkAmount(amount);
+                return ledger.transfer(fromAccountNumber, toAccountNumber, amount, durability).join();
+            }
+        });
+    }
+
+    public CompletableFuture<Void> makeLoanPayment(final String accountHolder, final double amount) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                checkAmount(amount);
+                BankAccount account = requireAccount(accountHolder);
+                if (!(account instanceof LoanMortgageAccount)) {
+                    throw new IllegalArgumentException(accountHolder + " has no loan mortgage account");
+                }
+                return ((LoanMortgageAccount) account).makeLoanPayment(amount, durability).join();
+            }
+        });
+    }
+
+    // Transactions timestamped within [fromMillis, toMillis], oldest first
+    public CompletableFuture<List<Transaction>> statement(final String accountHolder, final long fromMillis, final long toMillis) {
+        return submit(new Callable<List<Transaction>>() {
+            @Override
+            public List<Transaction> call() {
+                return requireAccount(accountHolder).getTransactions(fromMillis, toMillis);
+            }
+        });
+    }
+
+    // Streams the statement to a file rather than collecting it; see StatementWriter
+    public CompletableFuture<StatementWriter.Summary> exportStatement(final String accountHolder, final long fromMillis, final long toMillis,
+                                                                      final Path path, final StatementWriter.Format format) {
+        return submit(new Callable<StatementWriter.Summary>() {
+            @Override
+            public StatementWriter.Summary call() throws IOException {
+                return new StatementWriter(format).export(requireAccount(accountHolder), fromMillis, toMillis, path);
+            }
+        });
+    }
+
+    public CompletableFuture<InterestAccrual.Result> accrueInterest(final int period, final InterestAccrual.ProgressListener listener) {
+        return submit(new Callable<InterestAccrual.Result>() {
+            @Override
+            public InterestAccrual.Result call() throws Exception {
+                return new InterestAccrual(manager).run(period, listener);
+            }
+        });
+    }
+
+    public CompletableFuture<LoanPortfolio> loanPortfolio() {
+        return submit(new Callable<LoanPortfolio>() {
+            @Override
+            public LoanPortfolio call() {
+                return new LoanPortfolio(manager);
+            }
+        });
+    }
+
+    public CompletableFuture<BalanceReport> balancesAsOf(final long millis) {
+        return submit(new Callable<BalanceReport>() {
+            @Override
+            public BalanceReport call() {
+                return BalanceReport.asOf(manager, millis);
+            }
+        });
+    }
+
+    public CompletableFuture<TransactionQuery.Result> query(final TransactionQuery query) {
+        return submit(new Callable<TransactionQuery.Result>() {
+            @Override
+            public TransactionQuery.Result call() {
+                return query.run(manager);
+            }
+        });
+    }
+
+    public CompletableFuture<CustomerImport.Result> importCustomers(final Path csv, final boolean skipInvalid) {
+        return submit(new Callable<CustomerImport.Result>() {
+            @Override
+            public CustomerImport.Result call() throws IOException {
+                return new CustomerImport(manager, ProfileStore.getShared()).run(csv, skipInvalid);
+            }
+        });
+    }
+
+    // One page of the transactions timestamped within [fromMillis, toMillis], oldest first
+    public CompletableFuture<List<Transaction>> history(final int accountNumber, final long fromMillis, final long toMillis,
+                                                        final int offset, final int limit) {
+        return submit(new Callable<List<Transaction>>() {
+            @Override
+            public List<Transaction> call() {
+                BankAccount account = manager.getAccount(accountNumber);
+                if (account == null) {
+                    throw new IllegalArgumentException("No account " + accountNumber);
+                }
+                return account.getTransactionPage(fromMillis, toMillis, offset, limit);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    private BankAccount requireAccount(String accountHolder) {
+        BankAccount account = manager.getAccount(accountHolder);
+        if (account == null) {
+            throw new IllegalArgumentException("No account for " + accountHolder);
+        }
+        return account;
+    }
+
+    private static void checkAmount(double amount) {
+        if (!(amount > 0) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Amount must be a positive number: " + amount);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(final Callable<T> task) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.complete(task.call());
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
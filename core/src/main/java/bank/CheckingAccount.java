@@ -0,0 +1,61 @@
+package bank;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+class CheckingAccount extends BankAccount {
+    private static final long serialVersionUID = -1864285943269942762L;
+    private static final Logger LOG = Logger.getLogger(CheckingAccount.class.getName());
+    private double overdraftLimit;
+
+    public CheckingAccount(int accountNumber, String accountHolder, int balance, double overdraftLimit) {
+        super(accountNumber, accountHolder, balance);
+        this.overdraftLimit = overdraftLimit;
+    }
+
+    CheckingAccount(int accountNumber, String accountHolder, double balance, TransactionLog transactionLog, SegmentTable segments, double overdraftLimit) {
+        super(accountNumber, accountHolder, balance, transactionLog, segments);
+        this.overdraftLimit = overdraftLimit;
+    }
+
+    public double getOverdraftLimit() {
+        return overdraftLimit;
+    }
+
+    @Override
+    boolean allowsWithdrawal(long amountCents) {
+        return TransactionLog.toAmount(amountCents) <= balance + overdraftLimit;
+    }
+
+    @Override
+    byte withdrawalType() {
+        return TransactionLog.WITHDRAW;
+    }
+
+    @Override
+    BankAccount copyForSnapshot() {
+        return new CheckingAccount(accountNumber, accountHolder, balance, transactionLog.snapshot(), segments.snapshot(), overdraftLimit);
+    }
+
+    @Override
+    public boolean withdraw(double amount) {
+        long start = System.nanoTime();
+        boolean done = false;
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            long cents = TransactionLog.toCents(amount);
+            if (allowsWithdrawal(cents)) {
+                recordTransaction(TransactionLog.WITHDRAW, cents);
+                done = true;
+                return true;
+            } else {
+                LOG.fine("Withdrawal from account " + accountNumber + " exceeds the overdraft limit");
+                return false;
+            }
+        } finally {
+            lock.unlock();
+            BankMetrics.WITHDRAW.record(start, done);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package bank;
+
+import java.util.*;
+
+// Copy-on-write capture of the accounts as they stood when the journal was rotated for a checkpoint.
+// Writers hand over an account's state before changing it for the first time after the rotation, and
+// the checkpoint copies every account nobody has touched, so no lock is held across the whole walk.
+class CheckpointCut {
+    private volatile long generation; // generation being captured; accounts attached in it are not part of the cut
+    private volatile List<BankAccount> copies;
+
+    // Called with every stripe lock held, right after the journal moves to generation
+    void begin(long generation) {
+        this.copies = Collections.synchronizedList(new ArrayList<BankAccount>());
+        this.generation = generation;
+    }
+
+    // Must be called with the account's stripe lock held, before the account changes
+    void capture(BankAccount account) {
+        List<BankAccount> copies = this.copies;
+        if (copies != null && account.capturedGeneration < generation) {
+            copies.add(account.copyForSnapshot());
+            account.capturedGeneration = generation;
+        }
+    }
+
+    // Stops capturing and returns the copies; the caller has captured every account itself by now
+    List<BankAccount> finish() {
+        List<BankAccount> captured = copies;
+        copies = null;
+        return captured;
+    }
+
+    long generation() {
+        return generation;
+    }
+}
@@ -0,0 +1,294 @@
+package bank;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// User credentials for the login screen. The file is append-only: one "username:hash" line per
+// registration or rehash, and the last line for a username wins. The whole file is indexed in
+// memory at startup. Passwords are PBKDF2 hashes with a per-user salt. Hashing runs on a small
+// bounded pool, so a burst of logins queues up (or is turned away) instead of taking every core.
+// Plaintext lines left by the old format are hashed and the file rewritten once when it is opened.
+class CredentialStore {
+    private static final Logger LOG = Logger.getLogger(CredentialStore.class.getName());
+    public static final String DEFAULT_PATH = "user_credentials.txt";
+    public static final int ITERATIONS = Integer.getInteger("bank.passwordIterations", 210000);
+    public static final int VERIFY_THREADS = Integer.getInteger("bank.authThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    public static final int VERIFY_QUEUE = Integer.getInteger("bank.authQueue", 256);
+
+    private static final String SCHEME = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    // A stored count above this is treated as corrupt rather than tying up a verifier thread
+    private static final int MAX_ITERATIONS = Math.max(ITERATIONS, 10000000);
+    private static final SecureRandom random = new SecureRandom();
+    private static CredentialStore shared;
+
+    private final ConcurrentHashMap<String, String> index = new ConcurrentHashMap<>();
+    private final FileChannel channel;
+    private final ThreadPoolExecutor verifier;
+    // Hashed against for unknown users, so a miss takes as long as a wrong password
+    private final String decoy;
+
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+
+    public CredentialStore(String path) throws IOException {
+        this(path, VERIFY_THREADS, VERIFY_QUEUE);
+    }
+
+    public CredentialStore(String path, int threads, int queueSize) throws IOException {
+        File file = new File(path);
+        int lines = 0;
+        boolean plaintext = false;
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf(':');
+                    if (separator > 0) {
+                        String stored = line.substring(separator + 1);
+                        index.put(line.substring(0, separator), stored);
+                        plaintext |= !stored.startsWith(SCHEME + "$");
+                        lines++;
+                    }
+                }
+            }
+        }
+        if (plaintext || lines > 2 * index.size()) {
+            compact(file);
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.verifier = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "credential-verifier-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.decoy = hash("decoy".toCharArray(), new byte[SALT_BYTES], ITERATIONS);
+    }
+
+    public static synchronized CredentialStore getShared() {
+        if (shared == null) {
+            try {
+                shared = new CredentialStore(DEFAULT_PATH);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error opening the user credentials file", e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        return shared;
+    }
+
+    public boolean contains(String username) {
+        return index.containsKey(username);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public CompletableFuture<Boolean> verify(final String username, final char[] password) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                verifications.increment();
+                long start = System.nanoTime();
+                boolean valid = false;
+                try {
+                    String stored = index.get(username);
+                    if (stored == null) {
+                        matches(password, decoy);
+                        valid = false;
+                    } else {
+                        valid = matches(password, stored);
+                    }
+                    if (!valid) {
+                        failures.increment();
+                    } else if (!stored.startsWith(SCHEME + "$" + ITERATIONS + "$")) {
+                        // Hashed at an older iteration count: store it again at the current cost
+                        append(username, hash(password, newSalt(), ITERATIONS));
+                    }
+                    return valid;
+                } finally {
+                    Arrays.fill(password, '\0');
+                    BankMetrics.CREDENTIAL_CHECK.record(start, valid);
+                }
+            }
+        });
+    }
+
+    // Completes with false if the username is already taken
+    public CompletableFuture<Boolean> register(final String username, final char[] password) {
+        if (username.isEmpty() || username.indexOf(':') >= 0 || username.indexOf('\n') >= 0 || username.indexOf('\r') >= 0) {
+            CompletableFuture<Boolean> invalid = new CompletableFuture<>();
+            invalid.completeExceptionally(new IllegalArgumentException("Usernames cannot be empty or contain ':' or line breaks"));
+            return invalid;
+        }
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                if (index.containsKey(username)) {
+                    Arrays.fill(password, '\0');
+                    return false;
+                }
+                String hashed = hash(password, newSalt(), ITERATIONS);
+                Arrays.fill(password, '\0');
+                synchronized (CredentialStore.this) {
+                    if (index.containsKey(username)) {
+                        return false;
+                    }
+                    append(username, hashed);
+                }
+                return true;
+            }
+        });
+    }
+
+    public long getVerifications() {
+        return verifications.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public double getAverageHashMillis() {
+        long count = hashes.sum();
+        return count == 0 ? 0 : hashNanos.sum() / 1e6 / count;
+    }
+
+    public int getQueuedVerifications() {
+        return verifier.getQueue().size();
+    }
+
+    public void close() throws IOException {
+        verifier.shutdown();
+        channel.close();
+    }
+
+    private <T> CompletableFuture<T> submit(final Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            verifier.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(task.call());
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(new IllegalStateException("Too many sign-in attempts in progress, please try again"));
+        }
+        return future;
+    }
+
+    // Rewrites the file with one hashed line per user, replacing it only once the copy is on disk
+    private void compact(File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temporary);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, String> entry : index.entrySet()) {
+                if (!entry.getValue().startsWith(SCHEME + "$")) {
+                    entry.setValue(hash(entry.getValue().toCharArray(), newSalt(), ITERATIONS));
+                }
+                writer.write(entry.getKey() + ":" + entry.getValue());
+                writer.write(System.lineSeparator());
+            }
+            writer.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("User credentials file rewritten with " + index.size() + " hashed entries");
+    }
+
+    private synchronized void append(String username, String hashed) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap((username + ":" + hashed + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        channel.force(false);
+        index.put(username, hashed);
+    }
+
+    // A stored hash that cannot be parsed never matches; it is logged so the entry can be reset
+    private boolean matches(char[] password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        byte[] salt;
+        int iterations;
+        try {
+            salt = Base64.getDecoder().decode(parts[2]);
+            iterations = Integer.parseInt(parts[1]);
+        } catch (IllegalArgumentException e) {
+            LOG.log(Level.WARNING, "Malformed stored credential hash", e);
+            return false;
+        }
+        if (salt.length == 0 || iterations < 1 || iterations > MAX_ITERATIONS) {
+            LOG.warning("Malformed stored credential hash: " + salt.length + " byte salt, " + iterations + " iterations");
+            return false;
+        }
+        String candidate = hash(password, salt, iterations);
+        return MessageDigest.isEqual(candidate.getBytes(StandardCharsets.US_ASCII), stored.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private String hash(char[] password, byte[] salt, int iterations) {
+        long start = System.nanoTime();
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            byte[] hash = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return SCHEME + "$" + iterations + "$" + Base64.getEncoder().encodeToString(salt) + "$" + Base64.getEncoder().encodeToString(hash);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+            hashes.increment();
+            hashNanos.add(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package bank;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Bulk onboarding of customers from CSV. The header names the columns, in any order:
+//   username,email,phone,account_type,opening_balance,interest_rate,overdraft_limit,loan_amount,loan_term_months
+// account_type is basic, savings, checking or loan; columns a type doesn't use may be left out or
+// blank. Rows are parsed, validated and turned into accounts in parallel, then checked for
+// duplicates in file order. The accounts are opened in one journal run and the profiles written
+// with one force, so a few hundred thousand customers go in one persistence pass.
+class CustomerImport {
+    private static final Logger LOG = Logger.getLogger(CustomerImport.class.getName());
+    public static final int LEAF_SIZE = 2048;
+
+    public static class Result {
+        public final int rows;
+        public final int imported; // accounts opened
+        public final List<String> errors;
+        public final String profileError; // set when the accounts were opened but their profiles could not be saved
+        public final long elapsedMillis;
+
+        Result(int rows, int imported, List<String> errors, String profileError, long elapsedMillis) {
+            this.rows = rows;
+            this.imported = imported;
+            this.errors = errors;
+            this.profileError = profileError;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Imported " + imported + " of " + rows + " customers in " + elapsedMillis + " ms"
+                    + (errors.isEmpty() ? "" : ", " + errors.size() + " rows rejected")
+                    + (profileError == null ? "" : "; their profiles were NOT saved: " + profileError);
+        }
+    }
+
+    private final BankAccountManager manager;
+    private final ProfileStore profiles;
+    private final ForkJoinPool pool;
+
+    public CustomerImport(BankAccountManager manager, ProfileStore profiles) {
+        this(manager, profiles, ForkJoinPool.commonPool());
+    }
+
+    public CustomerImport(BankAccountManager manager, ProfileStore profiles, ForkJoinPool pool) {
+        this.manager = manager;
+        this.profiles = profiles;
+        this.pool = pool;
+    }
+
+    // With skipInvalid false, any rejected row stops the whole import before anything is written
+    public Result run(Path csv, boolean skipInvalid) throws IOException {
+        long started = System.currentTimeMillis();
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            return new Result(0, 0, Collections.<String>emptyList(), null, 0);
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> header = splitCsv(lines.get(0));
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : new String[] {"username", "account_type"}) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header has no " + required + " column");
+            }
+        }
+        int rows = lines.size() - 1;
+        Row[] parsed = new Row[rows];
+        String[] errors = new String[rows];
+        pool.invoke(new Validation(lines, columns, parsed, errors, 0, rows));
+
+        // Duplicates are resolved in file order, so the first occurrence wins whatever the thread timing
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> phones = new HashSet<>();
+        List<String> rejected = new ArrayList<>();
+        List<Integer> accepted = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            if (errors[i] == null) {
+                Row row = parsed[i];
+                String email = ProfileStore.normalizeEmail(row.email);
+                String phone = ProfileStore.normalizePhone(row.phone);
+                if (!usernames.add(row.username)) {
+                    errors[i] = "username " + row.username + " appears earlier in the file";
+                } else if (!email.isEmpty() && !emails.add(email)) {
+                    errors[i] = "email " + row.email + " appears earlier in the file";
+                } else if (!phone.isEmpty() && !phones.add(phone)) {
+                    errors[i] = "phone number " + row.phone + " appears earlier in the file";
+                }
+            }
+            if (errors[i] != null) {
+                rejected.add("line " + (i + 2) + ": " + errors[i]);
+            } else {
+                accepted.add(i);
+            }
+        }
+        if (accepted.isEmpty() || (!rejected.isEmpty() && !skipInvalid)) {
+            return new Result(rows, 0, rejected, null, System.currentTimeMillis() - started);
+        }
+
+        // Only accepted rows take account numbers
+        int firstNumber = manager.allocateAccountNumbers(accepted.size());
+        Map<BankAccount, Integer> lineOf = new IdentityHashMap<>();
+        List<BankAccount> newAccounts = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            BankAccount account = parsed[accepted.get(i)].open(firstNumber + i);
+            newAccounts.add(account);
+            lineOf.put(account, accepted.get(i) + 2);
+        }
+        // Someone may have registered one of these holders since validation; the manager checks again
+        // under its lock and, when skipping invalid rows, leaves just those out
+        List<BankAccount> conflicts = new ArrayList<>();
+        try {
+            manager.openAccounts(newAccounts, Durability.SYNC, skipInvalid ? conflicts : null).join();
+        } catch (IllegalArgumentException e) {
+            rejected.add(e.getMessage());
+            return new Result(rows, 0, rejected, null, System.currentTimeMillis() - started);
+        }
+        for (BankAccount account : conflicts) {
+            rejected.add("line " + lineOf.get(account) + ": an account for " + account.getAccountHolder() + " already exists");
+        }
+        newAccounts.removeAll(conflicts);
+        if (profiles != null && !newAccounts.isEmpty()) {
+            List<CustomerProfile> newProfiles = new ArrayList<>(newAccounts.size());
+            for (BankAccount account : newAccounts) {
+                Row row = parsed[lineOf.get(account) - 2];
+                newProfiles.add(new CustomerProfile(row.username, row.email, row.phone, account.getAccountNumber()));
+            }
+            try {
+                profiles.putAll(newProfiles);
+            } catch (IOException | RuntimeException e) {
+                // The accounts are committed; say so rather than fail as if nothing had been written
+                LOG.log(Level.SEVERE, "Opened " + newAccounts.size() + " imported accounts but could not save their profiles", e);
+                return new Result(rows, newAccounts.size(), rejected, String.valueOf(e.getMessage()), System.currentTimeMillis() - started);
+            }
+        }
+        return new Result(rows, newAccounts.size(), rejected, null, System.currentTimeMillis() - started);
+    }
+
+    // A row that passed validation; it gets an account number only once it is accepted
+    private static class Row {
+        final String username;
+        final String email;
+        final String phone;
+        final String type; // basic, savings, checking or loan
+        final long openingCents;
+        final double rate;
+        final double overdraft;
+        final double loanAmount;
+        final int term;
+
+        Row(String username, String email, String phone, String type, long openingCents, double rate, double overdraft,
+            double loanAmount, int term) {
+            this.username = username;
+            this.email = email;
+            this.phone = phone;
+            this.type = type;
+            this.openingCents = openingCents;
+            this.rate = rate;
+            this.overdraft = overdraft;
+            this.loanAmount = loanAmount;
+            this.term = term;
+        }
+
+        BankAccount open(int accountNumber) {
+            if (type.equals("loan")) {
+                return new LoanMortgageAccount(accountNumber, username, 0, new TransactionLog(), new SegmentTable(), loanAmount, rate, term, 0);
+            }
+            TransactionLog log = new TransactionLog();
+            log.append(TransactionLog.INITIAL, System.currentTimeMillis(), TransactionIdGenerator.next(), openingCents);
+            double balance = TransactionLog.toAmount(openingCents);
+            if (type.equals("savings")) {
+                return new SavingsAccount(accountNumber, username, balance, log, new SegmentTable(), rate, 0);
+            } else if (type.equals("checking")) {
+                return new CheckingAccount(accountNumber, username, balance, log, new SegmentTable(), overdraft);
+            }
+            return new BankAccount(accountNumber, username, balance, log, new SegmentTable());
+        }
+    }
+
+    private class Validation extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<String> lines;
+        private final Map<String, Integer> columns;
+        private final Row[] parsed;
+        private final String[] errors;
+        private final int from;
+        private final int to;
+
+        Validation(List<String> lines, Map<String, Integer> columns, Row[] parsed, String[] errors, int from, int to) {
+            this.lines = lines;
+            this.columns = columns;
+            this.parsed = parsed;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Validation(lines, columns, parsed, errors, from, middle),
+                        new Validation(lines, columns, parsed, errors, middle, to));
+                return;
+            }
+            for (int row = from; row < to; row++) {
+                try {
+                    parseRow(row);
+                } catch (IllegalArgumentException e) {
+                    errors[row] = e.getMessage();
+                }
+            }
+        }
+
+        private void parseRow(int row) {
+            List<String> fields = splitCsv(lines.get(row + 1));
+            String username = field(fields, "username");
+            if (username.isEmpty() || username.indexOf(':') >= 0) {
+                throw new IllegalArgumentException("username must be non-empty and cannot contain ':'");
+            }
+            String email = field(fields, "email");
+            if (!email.isEmpty() && (email.indexOf('@') <= 0 || email.indexOf('@') == email.length() - 1)) {
+                throw new IllegalArgumentException("invalid email " + email);
+            }
+            String phone = field(fields, "phone");
+            if (!phone.isEmpty() && ProfileStore.normalizePhone(phone).replace("+", "").length() < 5) {
+                throw new IllegalArgumentException("invalid phone number " + phone);
+            }
+            if (manager.getAccount(username) != null) {
+                throw new IllegalArgumentException("an account for " + username + " already exists");
+            }
+            if (profiles != null) {
+                if (profiles.findByUsername(username) != null) {
+                    throw new IllegalArgumentException("a profile for " + username + " already exists");
+                }
+                CustomerProfile holder = email.isEmpty() ? null : profiles.findByEmail(email);
+                if (holder == null && !phone.isEmpty()) {
+                    holder = profiles.findByPhone(phone);
+                }
+                if (holder != null) {
+                    throw new IllegalArgumentException("email or phone number already registered to " + holder.getUsername());
+                }
+            }
+            long openingCents = TransactionLog.toCents(number(fields, "opening_balance", 0));
+            if (openingCents < 0) {
+                throw new IllegalArgumentException("opening_balance cannot be negative");
+            }
+            String type = field(fields, "account_type").toLowerCase(Locale.ROOT);
+            double rate = 0;
+            double overdraft = 0;
+            double loanAmount = 0;
+            double term = 0;
+            if (type.equals("loan")) {
+                loanAmount = number(fields, "loan_amount", -1);
+                rate = number(fields, "interest_rate", -1);
+                term = number(fields, "loan_term_months", -1);
+                if (loanAmount <= 0 || rate < 0 || term < 1 || term != Math.floor(term)) {
+                    throw new IllegalArgumentException("loan accounts need a positive loan_amount, interest_rate and whole loan_term_months");
+                }
+                if (openingCents != 0) {
+                    throw new IllegalArgumentException("loan accounts open with a zero balance");
+                }
+            } else if (type.equals("savings")) {
+                rate = number(fields, "interest_rate", 0);
+                if (rate < 0) {
+                    throw new IllegalArgumentException("interest_rate cannot be negative");
+                }
+            } else if (type.equals("checking")) {
+                overdraft = number(fields, "overdraft_limit", 0);
+                if (overdraft < 0) {
+                    throw new IllegalArgumentException("overdraft_limit cannot be negative");
+                }
+            } else if (!type.equals("basic")) {
+                throw new IllegalArgumentException("unknown account_type " + type);
+            }
+            parsed[row] = new Row(username, email, phone, type, openingCents, rate, overdraft, loanAmount, (int) term);
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            return index == null || index >= fields.size() ? "" : fields.get(index).trim();
+        }
+
+        private double number(List<String> fields, String column, double missing) {
+            String value = field(fields, column);
+            if (value.isEmpty()) {
+                return missing;
+            }
+            try {
+                double number = Double.parseDouble(value);
+                if (Double.isNaN(number) || Double.isInfinite(number)) {
+                    throw new NumberFormatException();
+                }
+                return number;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column + " is not a number: " + value);
+            }
+        }
+    }
+
+    // Splits one CSV line; fields may be double-quoted, with "" standing for a quote inside them
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java bank.CustomerImport <customers.csv> [--skip-invalid]");
+            return;
+        }
+        boolean skipInvalid = args.length > 1 && args[1].equals("--skip-invalid");
+        BankAccountManager manager = BankAccountManager.getShared(BankAccountManager.DEFAULT_FILE_PATH);
+        Result result = new CustomerImport(manager, ProfileStore.getShared()).run(Paths.get(args[0]), skipInvalid);
+        for (String error : result.errors) {
+            System.out.println(error);
+        }
+        System.out.println(result);
+        manager.close();
+        // 1 when the import failed or a strict import was refused, 2 when some rows were skipped
+        int status = 0;
+        if (result.profileError != null || (!skipInvalid && !result.errors.isEmpty())) {
+            status = 1;
+        } else if (result.imported < result.rows) {
+            status = 2;
+        }
+        System.exit(status);
+    }
+}
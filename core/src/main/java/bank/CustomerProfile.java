@@ -0,0 +1,32 @@
+package bank;
+
+class CustomerProfile {
+    private final String username;
+    private final String email;
+    private final String phoneNumber;
+    private final int accountNumber;
+
+    public CustomerProfile(String username, String email, String phoneNumber, int accountNumber) {
+        this.username = username;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+        this.accountNumber = accountNumber;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    // Links the profile to its account in BankAccountManager
+    public int getAccountNumber() {
+        return accountNumber;
+    }
+}
@@ -0,0 +1,18 @@
+package bank;
+
+import java.util.concurrent.TimeUnit;
+
+// How soon a caller needs its journal records on disk. Every mode returns at once with a future that
+// completes when the records are fsynced; the modes only differ in how long the group commit may wait
+// to gather more records into the same fsync.
+enum Durability {
+    SYNC(0),
+    BATCHED(Long.getLong("bank.groupCommitMillis", 2)),
+    ASYNC(Long.getLong("bank.asyncCommitMillis", 50));
+
+    final long maxDelayNanos;
+
+    Durability(long maxDelayMillis) {
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+}
@@ -0,0 +1,101 @@
+package bank;
+
+import java.io.*;
+
+// Walks an account's history in order, loading one sealed segment at a time, so even a very long
+// history is read with bounded memory. Segments entirely outside the time range are never loaded.
+class HistoryCursor {
+    private final HistorySegmentStore store;
+    private final SegmentTable segments;
+    private final TransactionLog tail;
+    private final long fromMillis;
+    private final long toMillis;
+    private int skip; // leading entries still to pass over
+    private int segmentIndex = -1; // segments.size() stands for the tail
+    private TransactionLog current;
+    private int position;
+    private int segmentsRead;
+    private int segmentsSkipped; // passed over by time range without being loaded
+
+    HistoryCursor(HistorySegmentStore store, SegmentTable segments, TransactionLog tail, long fromMillis, long toMillis, int skip) {
+        this.store = store;
+        this.segments = segments;
+        this.tail = tail;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.skip = skip;
+    }
+
+    public boolean next() {
+        while (true) {
+            if (current != null) {
+                while (++position < current.size()) {
+                    long timestamp = current.timestamp(position);
+                    if (timestamp >= fromMillis && timestamp <= toMillis) {
+                        return true;
+                    }
+                }
+                current = null;
+            }
+            if (!advance()) {
+                return false;
+            }
+        }
+    }
+
+    public long timestamp() {
+        return current.timestamp(position);
+    }
+
+    public long id() {
+        return current.id(position);
+    }
+
+    public long amountCents() {
+        return current.amountCents(position);
+    }
+
+    public byte type() {
+        return current.type(position);
+    }
+
+    public Transaction transaction() {
+        return current.get(position);
+    }
+
+    public int segmentsRead() {
+        return segmentsRead;
+    }
+
+    public int segmentsSkipped() {
+        return segmentsSkipped;
+    }
+
+    private boolean advance() {
+        while (++segmentIndex <= segments.size()) {
+            if (segmentIndex == segments.size()) {
+                current = tail;
+            } else {
+                int count = segments.count(segmentIndex);
+                boolean outsideRange = segments.maxTimestamp(segmentIndex) < fromMillis || segments.minTimestamp(segmentIndex) > toMillis;
+                if (skip >= count || outsideRange) {
+                    skip = Math.max(0, skip - count);
+                    if (outsideRange) {
+                        segmentsSkipped++;
+                    }
+                    continue;
+                }
+                try {
+                    current = store.read(segments.offset(segmentIndex));
+                    segmentsRead++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error reading history segment", e);
+                }
+            }
+            position = skip - 1;
+            skip = 0;
+            return true;
+        }
+        return false;
+    }
+}
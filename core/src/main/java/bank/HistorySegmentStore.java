@@ -0,0 +1,98 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Append-only file of sealed history segments shared by all accounts of one manager. A segment is
+// written once, never changed, and read back on demand through a bounded cache.
+class HistorySegmentStore {
+    public static final int SEGMENT_SIZE = 512; // entries per sealed segment
+    private static final int HEADER_BYTES = 4 + 8;
+    private static final int ENTRY_BYTES = 1 + 8 + 8 + 8;
+
+    private final FileChannel channel;
+    private final LruCache<Long, TransactionLog> cache;
+
+    public HistorySegmentStore(String filePath, int cacheSize) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cache = new LruCache<>(cacheSize);
+    }
+
+    // Writes entries [from, to) of the log as one segment and returns its offset
+    public long write(TransactionLog log, int from, int to) throws IOException {
+        int count = to - from;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * ENTRY_BYTES);
+        buffer.position(HEADER_BYTES);
+        for (int i = from; i < to; i++) {
+            buffer.put(log.type(i));
+            buffer.putLong(log.timestamp(i));
+            buffer.putLong(log.id(i));
+            buffer.putLong(log.amountCents(i));
+        }
+        buffer.flip();
+        buffer.position(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        buffer.putInt(0, count);
+        buffer.putLong(4, crc.getValue());
+        buffer.position(0);
+        synchronized (this) {
+            long offset = channel.size();
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            return offset;
+        }
+    }
+
+    // The returned log is shared through the cache and must not be modified
+    public TransactionLog read(long offset) throws IOException {
+        TransactionLog cached = cache.get(offset);
+        if (cached != null) {
+            return cached;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, offset);
+        int count = header.getInt(0);
+        long expectedCrc = header.getLong(4);
+        ByteBuffer body = ByteBuffer.allocate(count * ENTRY_BYTES);
+        readFully(body, offset + HEADER_BYTES);
+        body.flip();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if (crc.getValue() != expectedCrc) {
+            throw new IOException("Corrupt history segment at offset " + offset);
+        }
+        body.rewind();
+        TransactionLog log = new TransactionLog(count);
+        for (int i = 0; i < count; i++) {
+            byte type = body.get();
+            log.append(type, body.getLong(), body.getLong(), body.getLong());
+        }
+        log.freeze();
+        cache.put(offset, log);
+        return log;
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("History segment truncated at offset " + position);
+            }
+        }
+    }
+}
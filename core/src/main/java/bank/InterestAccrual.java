@@ -0,0 +1,219 @@
+package bank;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Month-end interest posting for every SavingsAccount, in three steps. The accounts are split over a
+// fork-join pool whose leaves work out what each account is due, stage the credits and journal them
+// as one RUN_PART record, leaving the accounts unchanged. A RUN_COMMIT written after the last leaf
+// then makes the whole run count at once, and only after it does Apply credit the accounts. Recovery
+// ignores a run without its commit, so after a crash or a failed write halfway the run is simply
+// started again. Every account remembers the last period it was credited for, so running a period
+// twice never pays twice.
+class InterestAccrual {
+    public static final int LEAF_SIZE = 4096;
+
+    public interface ProgressListener {
+        void progress(int period, long done, long total);
+    }
+
+    public static class Result {
+        public final int period;
+        public final int accounts;
+        public final long credited;
+        public final long totalCents;
+        public final long elapsedMillis;
+
+        Result(int period, int accounts, long credited, long totalCents, long elapsedMillis) {
+            this.period = period;
+            this.accounts = accounts;
+            this.credited = credited;
+            this.totalCents = totalCents;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Interest for " + period + ": " + credited + " of " + accounts + " savings accounts credited "
+                    + TransactionLog.toAmount(totalCents) + " in " + elapsedMillis + " ms";
+        }
+    }
+
+    private final BankAccountManager manager;
+    private final ForkJoinPool pool;
+
+    public InterestAccrual(BankAccountManager manager) {
+        this(manager, ForkJoinPool.commonPool());
+    }
+
+    public InterestAccrual(BankAccountManager manager, ForkJoinPool pool) {
+        this.manager = manager;
+        this.pool = pool;
+    }
+
+    // period is the month being credited as yyyymm, e.g. 202610
+    public Result run(final int period, final ProgressListener listener) throws Exception {
+        if (period % 100 < 1 || period % 100 > 12) {
+            throw new IllegalArgumentException("Period must be yyyymm: " + period);
+        }
+        return manager.runBetweenCheckpoints(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                return accrue(period, listener);
+            }
+        });
+    }
+
+    private Result accrue(int period, ProgressListener listener) throws IOException {
+        long start = System.nanoTime();
+        List<SavingsAccount> savings = new ArrayList<>();
+        for (BankAccount account : manager.getAccounts()) {
+            if (account instanceof SavingsAccount) {
+                savings.add((SavingsAccount) account);
+            }
+        }
+        SavingsAccount[] accounts = savings.toArray(new SavingsAccount[0]);
+        TransactionJournal journal = manager.getJournal();
+        long runId = TransactionIdGenerator.next();
+        Credits credits = new Credits(accounts.length);
+        Partition root = new Partition(accounts, 0, accounts.length, period, runId, journal, listener, new Progress(accounts.length), credits);
+        // Credits are staged until the run commits, so a failed journal write leaves every account as it was
+        try {
+            pool.invoke(root);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        journal.appendRunCommit(runId);
+        pool.invoke(new Apply(accounts, 0, accounts.length, period, credits));
+        journal.whenDurable(null, Durability.SYNC).join();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new Result(period, accounts.length, root.credited, root.totalCents, elapsed);
+    }
+
+    private static class Progress {
+        final long total;
+        final AtomicLong done = new AtomicLong();
+
+        Progress(long total) {
+            this.total = total;
+        }
+    }
+
+    // Credits computed and journaled by a run, indexed like its accounts; cents is 0 where nothing is due
+    private static class Credits {
+        final long[] timestamps;
+        final long[] ids;
+        final long[] cents;
+
+        Credits(int count) {
+            timestamps = new long[count];
+            ids = new long[count];
+            cents = new long[count];
+        }
+    }
+
+    private static class Partition extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final SavingsAccount[] accounts;
+        private final int from;
+        private final int to;
+        private final int period;
+        private final long runId;
+        private final TransactionJournal journal;
+        private final ProgressListener listener;
+        private final Progress progress;
+        private final Credits credits;
+        long credited;
+        long totalCents;
+
+        Partition(SavingsAccount[] accounts, int from, int to, int period, long runId, TransactionJournal journal,
+                  ProgressListener listener, Progress progress, Credits credits) {
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+            this.period = period;
+            this.runId = runId;
+            this.journal = journal;
+            this.listener = listener;
+            this.progress = progress;
+            this.credits = credits;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                Partition left = new Partition(accounts, from, middle, period, runId, journal, listener, progress, credits);
+                Partition right = new Partition(accounts, middle, to, period, runId, journal, listener, progress, credits);
+                invokeAll(left, right);
+                credited = left.credited + right.credited;
+                totalCents = left.totalCents + right.totalCents;
+                return;
+            }
+            // One buffer per leaf; the credits themselves are staged without allocating
+            ByteArrayOutputStream records = new ByteArrayOutputStream((to - from) * 48);
+            DataOutputStream part = new DataOutputStream(records);
+            try {
+                for (int i = from; i < to; i++) {
+                    long cents = accounts[i].interestDue(period);
+                    if (cents > 0) {
+                        long timestamp = System.currentTimeMillis();
+                        long id = TransactionIdGenerator.next();
+                        TransactionJournal.writeAccrual(part, accounts[i], period, timestamp, id, cents);
+                        credits.timestamps[i] = timestamp;
+                        credits.ids[i] = id;
+                        credits.cents[i] = cents;
+                        credited++;
+                        totalCents += cents;
+                    }
+                }
+                if (credited > 0) {
+                    journal.appendRunPart(runId, (int) credited, records);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            long done = progress.done.addAndGet(to - from);
+            if (listener != null) {
+                listener.progress(period, done, progress.total);
+            }
+        }
+    }
+
+    // Applies a committed run's staged credits
+    private static class Apply extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final SavingsAccount[] accounts;
+        private final int from;
+        private final int to;
+        private final int period;
+        private final Credits credits;
+
+        Apply(SavingsAccount[] accounts, int from, int to, int period, Credits credits) {
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+            this.period = period;
+            this.credits = credits;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Apply(accounts, from, middle, period, credits), new Apply(accounts, middle, to, period, credits));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (credits.cents[i] > 0) {
+                    accounts[i].creditInterest(period, credits.timestamps[i], credits.ids[i], credits.cents[i]);
+                }
+            }
+        }
+    }
+}
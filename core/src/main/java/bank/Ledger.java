@@ -0,0 +1,108 @@
+package bank;
+
+import java.io.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Thread-safe entry point for moving money. Each account is guarded by its stripe lock, so
+// operations on accounts in different stripes run in parallel.
+class Ledger {
+    public static final LockStripes STRIPES = new LockStripes(Runtime.getRuntime().availableProcessors() * 16);
+
+    private final BankAccountManager manager;
+
+    public Ledger(BankAccountManager manager) {
+        this.manager = manager;
+    }
+
+    public boolean deposit(int accountNumber, double amount) {
+        BankAccount account = manager.getAccount(accountNumber);
+        if (account == null) {
+            return false;
+        }
+        account.deposit(amount);
+        return true;
+    }
+
+    public boolean withdraw(int accountNumber, double amount) {
+        BankAccount account = manager.getAccount(accountNumber);
+        return account != null && account.withdraw(amount);
+    }
+
+    // The futures complete with the same result once the change is durable, or fail with the
+    // IOException if it could not be journaled; see Durability
+    public CompletableFuture<Boolean> deposit(int accountNumber, double amount, Durability durability) {
+        boolean deposited;
+        try {
+            deposited = deposit(accountNumber, amount);
+        } catch (UncheckedIOException e) {
+            return BankAccount.failedWrite(e);
+        }
+        return manager.getJournal().whenDurable(deposited, durability);
+    }
+
+    public CompletableFuture<Boolean> withdraw(int accountNumber, double amount, Durability durability) {
+        boolean withdrawn;
+        try {
+            withdrawn = withdraw(accountNumber, amount);
+        } catch (UncheckedIOException e) {
+            return BankAccount.failedWrite(e);
+        }
+        return manager.getJournal().whenDurable(withdrawn, durability);
+    }
+
+    public CompletableFuture<Boolean> transfer(int fromAccountNumber, int toAccountNumber, double amount, Durability durability) {
+        boolean transferred;
+        try {
+            transferred = transfer(fromAccountNumber, toAccountNumber, amount);
+        } catch (UncheckedIOException e) {
+            return BankAccount.failedWrite(e);
+        }
+        return manager.getJournal().whenDurable(transferred, durability);
+    }
+
+    // Both legs run under both stripe locks, taken in index order so two opposite transfers cannot
+    // deadlock. They are journaled as one record before either is applied, so recovery sees all of the
+    // transfer or none of it, and a failed write throws with both accounts left untouched.
+    public boolean transfer(int fromAccountNumber, int toAccountNumber, double amount) {
+        if (fromAccountNumber == toAccountNumber || amount <= 0) {
+            return false;
+        }
+        BankAccount source = manager.getAccount(fromAccountNumber);
+        BankAccount target = manager.getAccount(toAccountNumber);
+        if (source == null || target == null) {
+            return false;
+        }
+        int first = STRIPES.indexOf(fromAccountNumber);
+        int second = STRIPES.indexOf(toAccountNumber);
+        ReentrantLock firstLock = STRIPES.get(Math.min(first, second));
+        ReentrantLock secondLock = STRIPES.get(Math.max(first, second));
+        long cents = TransactionLog.toCents(amount);
+        firstLock.lock();
+        secondLock.lock();
+        try {
+            if (!source.allowsWithdrawal(cents)) {
+                return false;
+            }
+            byte withdrawalType = source.withdrawalType();
+            long timestamp = System.currentTimeMillis();
+            long withdrawalId = TransactionIdGenerator.next();
+            long depositId = TransactionIdGenerator.next();
+            ByteArrayOutputStream entries = new ByteArrayOutputStream(128);
+            DataOutputStream entryOut = new DataOutputStream(entries);
+            try {
+                TransactionJournal.writeEntry(entryOut, source, withdrawalType, timestamp, withdrawalId, cents);
+                TransactionJournal.writeEntry(entryOut, target, TransactionLog.DEPOSIT, timestamp, depositId, cents);
+                manager.getJournal().appendEntries(2, entries);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error journaling transfer from " + fromAccountNumber + " to " + toAccountNumber, e);
+            }
+            source.settle(withdrawalType, timestamp, withdrawalId, cents);
+            target.settle(TransactionLog.DEPOSIT, timestamp, depositId, cents);
+            return true;
+        } finally {
+            secondLock.unlock();
+            firstLock.unlock();
+        }
+    }
+}
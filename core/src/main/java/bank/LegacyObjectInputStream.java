@@ -0,0 +1,26 @@
+package bank;
+
+import java.io.*;
+
+// Reads Java-serialized data written before the classes moved into the bank package. Those streams
+// name the classes without a package; serialization ignores the package when it matches a stream
+// class against the local one, so resolving the name is all that is needed.
+class LegacyObjectInputStream extends ObjectInputStream {
+    private static final String PACKAGE = LegacyObjectInputStream.class.getPackageName();
+
+    public LegacyObjectInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        try {
+            return super.resolveClass(desc);
+        } catch (ClassNotFoundException e) {
+            if (desc.getName().indexOf('.') >= 0) {
+                throw e;
+            }
+            return Class.forName(PACKAGE + "." + desc.getName(), false, LegacyObjectInputStream.class.getClassLoader());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package bank;
+
+import java.io.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+class LoanMortgageAccount extends BankAccount implements Serializable {
+    private static final long serialVersionUID = 7514388220464797093L;
+    private static final Logger LOG = Logger.getLogger(LoanMortgageAccount.class.getName());
+    private double loanAmount;
+    private double interestRate;
+    private int loanTermMonths; // The duration of the loan in months
+    private int paymentsMade; // scheduled payments made so far; the rest of the term is what remains to amortize
+    private transient AmortizationTable amortization;
+
+    public LoanMortgageAccount(int accountNumber, String accountHolder, double loanAmount, double interestRate, int loanTermMonths) {
+        super(accountNumber, accountHolder);
+        this.loanAmount = loanAmount;
+        this.interestRate = interestRate;
+        this.loanTermMonths = loanTermMonths;
+    }
+
+    LoanMortgageAccount(int accountNumber, String accountHolder, double balance, TransactionLog transactionLog, SegmentTable segments,
+                        double loanAmount, double interestRate, int loanTermMonths, int paymentsMade) {
+        super(accountNumber, accountHolder, balance, transactionLog, segments);
+        this.loanAmount = loanAmount;
+        this.interestRate = interestRate;
+        this.loanTermMonths = loanTermMonths;
+        this.paymentsMade = paymentsMade;
+    }
+
+    public double getLoanAmount() {
+        return loanAmount;
+    }
+
+    public double getInterestRate() {
+        return interestRate;
+    }
+
+    public int getLoanTermMonths() {
+        return loanTermMonths;
+    }
+
+    public int getPaymentsMade() {
+        return paymentsMade;
+    }
+
+    // Months left to amortize the current loan amount over. Never less than one, so a loan still owing
+    // after its last scheduled payment (or with a bad term on file) is quoted as due in full next month.
+    public int getRemainingTermMonths() {
+        return Math.max(1, loanTermMonths - paymentsMade);
+    }
+
+    @Override
+    BankAccount copyForSnapshot() {
+        return new LoanMortgageAccount(accountNumber, accountHolder, balance, transactionLog.snapshot(), segments.snapshot(),
+                loanAmount, interestRate, loanTermMonths, paymentsMade);
+    }
+
+    @Override
+    boolean allowsWithdrawal(long amountCents) {
+        return false;
+    }
+
+    @Override
+    public boolean withdraw(double amount) {
+        // In a loan mortgage account, withdrawing is not applicable. You might want to handle this accordingly.
+        LOG.fine("Withdrawal not allowed for loan mortgage account " + accountNumber);
+        return false;
+    }
+
+    public CompletableFuture<Void> makeLoanPayment(double paymentAmount, Durability durability) {
+        try {
+            makeLoanPayment(paymentAmount);
+        } catch (UncheckedIOException e) {
+            return failedWrite(e);
+        }
+        return whenDurable(null, durability);
+    }
+
+    public void makeLoanPayment(double paymentAmount) {
+        long start = System.nanoTime();
+        boolean done = false;
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            double monthlyPayment = calculateMonthlyPayment();
+
+            if (paymentAmount >= monthlyPayment) {
+                // Valid payment
+                recordTransaction(TransactionLog.LOAN_PAYMENT, TransactionLog.toCents(paymentAmount));
+                done = true;
+                LOG.fine("Loan payment recorded for account " + accountNumber);
+            } else {
+                LOG.fine("Loan payment for account " + accountNumber + " is below the monthly payment");
+            }
+        } finally {
+            lock.unlock();
+            BankMetrics.LOAN_PAYMENT.record(start, done);
+        }
+    }
+
+    private void applyLoanPayment(double paymentAmount) {
+        double monthlyInterest = loanAmount * interestRate / 12;
+        balance -= paymentAmount;
+        loanAmount -= (paymentAmount - monthlyInterest);
+        paymentsMade++;
+    }
+
+    @Override
+    void applyTransaction(byte type, long amountCents) {
+        if (type == TransactionLog.LOAN_PAYMENT) {
+            applyLoanPayment(TransactionLog.toAmount(amountCents));
+        } else {
+            super.applyTransaction(type, amountCents);
+        }
+    }
+
+    @Override
+    void replayTransaction(Transaction transaction) {
+        if (transaction.getType() == TransactionLog.LOAN_PAYMENT) {
+            applyLoanPayment(transaction.getAmount());
+            transactionLog.append(transaction);
+            sealFullSegments();
+        } else {
+            super.replayTransaction(transaction);
+        }
+    }
+
+    // Additional method to calculate the monthly payment
+    private double calculateMonthlyPayment() {
+        return amortization().payment(loanAmount);
+    }
+
+    // For the current loan amount over the remaining term, shared by every loan on the same rate and
+    // remaining term; see AmortizationTable
+    AmortizationTable amortization() {
+        AmortizationTable table = amortization;
+        int remaining = getRemainingTermMonths();
+        if (table == null || table.getTermMonths() != remaining) {
+            table = AmortizationTable.forLoan(interestRate, remaining);
+            amortization = table;
+        }
+        return table;
+    }
+
+    public double getMonthlyPayment() {
+        return calculateMonthlyPayment();
+    }
+
+    // Principal still owed after the given number of further scheduled payments
+    public double getOutstandingPrincipal(int paymentsAhead) {
+        return amortization().balanceAfter(loanAmount, paymentsAhead);
+    }
+
+    public double getPayoffQuote() {
+        return amortization().payoffQuote(loanAmount, 0);
+    }
+
+    public AmortizationSchedule getSchedule() {
+        return amortization().schedule(loanAmount);
+    }
+}
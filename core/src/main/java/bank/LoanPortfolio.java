@@ -0,0 +1,107 @@
+package bank;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+// All loan mortgage accounts laid out as parallel primitive arrays, for projections across the
+// whole portfolio. Each loan is copied under its stripe lock, so a payment is never half seen, and
+// the projections then run on the copy over a fork-join pool without further locking.
+class LoanPortfolio {
+    private static final int LEAF_SIZE = 8192;
+
+    private final double[] principals;
+    private final AmortizationTable[] tables;
+    private final ForkJoinPool pool;
+
+    public LoanPortfolio(BankAccountManager manager) {
+        this(manager, ForkJoinPool.commonPool());
+    }
+
+    public LoanPortfolio(BankAccountManager manager, ForkJoinPool pool) {
+        List<LoanMortgageAccount> loans = new ArrayList<>();
+        for (BankAccount account : manager.getAccounts()) {
+            if (account instanceof LoanMortgageAccount) {
+                loans.add((LoanMortgageAccount) account);
+            }
+        }
+        this.principals = new double[loans.size()];
+        this.tables = new AmortizationTable[loans.size()];
+        for (int i = 0; i < principals.length; i++) {
+            LoanMortgageAccount loan = loans.get(i);
+            ReentrantLock lock = Ledger.STRIPES.forAccount(loan.getAccountNumber());
+            lock.lock();
+            try {
+                principals[i] = loan.getLoanAmount();
+                tables[i] = loan.amortization();
+            } finally {
+                lock.unlock();
+            }
+        }
+        this.pool = pool;
+    }
+
+    public int size() {
+        return principals.length;
+    }
+
+    // Interest charged across all loans with the payment due monthsAhead months from now (0 = next month)
+    public double interestDue(int monthsAhead) {
+        return pool.invoke(new Projection(this, Projection.INTEREST, monthsAhead, 0, principals.length));
+    }
+
+    public double principalOutstanding(int monthsAhead) {
+        return pool.invoke(new Projection(this, Projection.OUTSTANDING, monthsAhead, 0, principals.length));
+    }
+
+    public double scheduledPayments(int monthsAhead) {
+        return pool.invoke(new Projection(this, Projection.PAYMENTS, monthsAhead, 0, principals.length));
+    }
+
+    private static class Projection extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+        static final int INTEREST = 0;
+        static final int OUTSTANDING = 1;
+        static final int PAYMENTS = 2;
+
+        private final LoanPortfolio portfolio;
+        private final int measure;
+        private final int monthsAhead;
+        private final int from;
+        private final int to;
+
+        Projection(LoanPortfolio portfolio, int measure, int monthsAhead, int from, int to) {
+            this.portfolio = portfolio;
+            this.measure = measure;
+            this.monthsAhead = monthsAhead;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                Projection left = new Projection(portfolio, measure, monthsAhead, from, middle);
+                Projection right = new Projection(portfolio, measure, monthsAhead, middle, to);
+                right.fork();
+                return left.compute() + right.join();
+            }
+            double[] principals = portfolio.principals;
+            AmortizationTable[] tables = portfolio.tables;
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                AmortizationTable table = tables[i];
+                if (measure == INTEREST) {
+                    sum += table.interestDue(principals[i], monthsAhead);
+                } else if (measure == OUTSTANDING) {
+                    sum += table.balanceAfter(principals[i], monthsAhead);
+                } else if (monthsAhead < table.getTermMonths()) {
+                    sum += table.payment(principals[i]);
+                }
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package bank;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fixed pool of locks shared by all accounts; an account always maps to the same stripe.
+// Code that needs several stripes must take them in ascending index order.
+class LockStripes {
+    private final ReentrantLock[] locks;
+
+    public LockStripes(int minimumStripes) {
+        int count = 1;
+        while (count < minimumStripes) {
+            count <<= 1;
+        }
+        locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public int indexOf(int accountNumber) {
+        int h = accountNumber * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (locks.length - 1);
+    }
+
+    public ReentrantLock get(int index) {
+        return locks[index];
+    }
+
+    public int size() {
+        return locks.length;
+    }
+
+    public ReentrantLock forAccount(int accountNumber) {
+        return locks[indexOf(accountNumber)];
+    }
+
+    public void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    public void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
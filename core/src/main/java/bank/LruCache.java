@@ -0,0 +1,33 @@
+package bank;
+
+import java.util.*;
+
+class LruCache<K, V> {
+    private final LinkedHashMap<K, V> entries;
+
+    public LruCache(final int capacity) {
+        // Access-ordered, so the eldest entry is always the least recently used one
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized V remove(K key) {
+        return entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,114 @@
+package bank;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Call and error counts plus a latency histogram for one kind of operation, readable over JMX
+class OperationMetrics implements DynamicMBean {
+    private static final String[] ATTRIBUTES = {"Count", "Errors", "ErrorRate", "MeanMicros", "P50Micros", "P99Micros", "P999Micros", "MaxMicros"};
+
+    private final String name;
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Pass the System.nanoTime() taken when the operation started
+    public void record(long startNanos, boolean success) {
+        latency.record(System.nanoTime() - startNanos);
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public double getErrorRate() {
+        long count = latency.getCount();
+        return count == 0 ? 0 : (double) errors.sum() / count;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        switch (attribute) {
+            case "Count":
+                return getCount();
+            case "Errors":
+                return getErrors();
+            case "ErrorRate":
+                return getErrorRate();
+            case "MeanMicros":
+                return latency.getMeanNanos() / 1000;
+            case "P50Micros":
+                return latency.getValueAtQuantile(0.5) / 1000.0;
+            case "P99Micros":
+                return latency.getValueAtQuantile(0.99) / 1000.0;
+            case "P999Micros":
+                return latency.getValueAtQuantile(0.999) / 1000.0;
+            case "MaxMicros":
+                return latency.getMaxNanos() / 1000.0;
+            default:
+                throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Left out, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[ATTRIBUTES.length];
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            String type = ATTRIBUTES[i].equals("Count") || ATTRIBUTES[i].equals("Errors") ? "long" : "double";
+            attributes[i] = new MBeanAttributeInfo(ATTRIBUTES[i], type, ATTRIBUTES[i] + " of " + name, true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Metrics for " + name, attributes, null, null, null);
+    }
+}
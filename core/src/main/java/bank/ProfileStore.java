@@ -0,0 +1,328 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Customer profiles keyed by username, with unique secondary indexes on email and phone number and
+// a reverse index on account number. Every index is a hash map, so each lookup is a single probe
+// however many customers there are. The file is an append-only log of put/remove records that is
+// replayed on open and compacted when superseded records outnumber live ones.
+class ProfileStore {
+    private static final Logger LOG = Logger.getLogger(ProfileStore.class.getName());
+    public static final String DEFAULT_PATH = "customer_profiles.dat";
+    private static final String LEGACY_PATH = "user_details.txt";
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static ProfileStore shared;
+
+    private final ConcurrentHashMap<String, CustomerProfile> byUsername = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CustomerProfile> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CustomerProfile> byPhone = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, CustomerProfile> byAccount = new ConcurrentHashMap<>();
+    private final File file;
+    private FileChannel channel;
+
+    public ProfileStore(String path) throws IOException {
+        this.file = new File(path);
+        long records = 0;
+        long valid = 0;
+        if (file.exists()) {
+            final long[] position = new long[1];
+            InputStream counting = new FilterInputStream(new BufferedInputStream(new FileInputStream(file))) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        position[0]++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        position[0] += read;
+                    }
+                    return read;
+                }
+            };
+            try (DataInputStream in = new DataInputStream(counting)) {
+                while (true) {
+                    byte type = in.readByte();
+                    if (type == PUT) {
+                        CustomerProfile profile = new CustomerProfile(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt());
+                        unindex(byUsername.get(profile.getUsername()));
+                        index(profile);
+                    } else if (type == REMOVE) {
+                        unindex(byUsername.get(in.readUTF()));
+                    } else {
+                        throw new IOException("Unknown profile record type " + type + " at offset " + valid);
+                    }
+                    records++;
+                    valid = position[0];
+                }
+            } catch (EOFException e) {
+                // End of the log, or a record cut short by a crash; the partial record is dropped below
+            }
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(valid);
+        channel.position(valid);
+        if (records > 2 * byUsername.size() + 1024) {
+            compact();
+        }
+    }
+
+    public static synchronized ProfileStore getShared() {
+        if (shared == null) {
+            try {
+                shared = new ProfileStore(DEFAULT_PATH);
+                shared.importLegacy(new File(LEGACY_PATH));
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error opening the customer profiles file", e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        return shared;
+    }
+
+    public CustomerProfile findByUsername(String username) {
+        return byUsername.get(username);
+    }
+
+    public CustomerProfile findByEmail(String email) {
+        String key = normalizeEmail(email);
+        return key.isEmpty() ? null : byEmail.get(key);
+    }
+
+    public CustomerProfile findByPhone(String phoneNumber) {
+        String key = normalizePhone(phoneNumber);
+        return key.isEmpty() ? null : byPhone.get(key);
+    }
+
+    public CustomerProfile findByAccountNumber(int accountNumber) {
+        return byAccount.get(accountNumber);
+    }
+
+    // Tries the key as a username, then an email address, then a phone number
+    public CustomerProfile find(String key) {
+        CustomerProfile profile = byUsername.get(key);
+        if (profile == null) {
+            profile = findByEmail(key);
+        }
+        if (profile == null) {
+            profile = findByPhone(key);
+        }
+        return profile;
+    }
+
+    public BankAccount findAccount(String key, BankAccountManager manager) {
+        CustomerProfile profile = find(key);
+        return profile == null ? null : manager.getAccount(profile.getAccountNumber());
+    }
+
+    public int size() {
+        return byUsername.size();
+    }
+
+    // Adds or replaces the profile for its username, moving only the index entries that changed
+    public void put(CustomerProfile profile) throws IOException {
+        putAll(Collections.singletonList(profile));
+    }
+
+    // Writes all the profiles with a single force, for bulk loads
+    public synchronized void putAll(Collection<CustomerProfile> profiles) throws IOException {
+        Map<String, CustomerProfile> claimed = new HashMap<>();
+        for (CustomerProfile profile : profiles) {
+            String email = normalizeEmail(profile.getEmail());
+            String phoneNumber = normalizePhone(profile.getPhoneNumber());
+            checkUnique(findByEmail(email), profile, "Email " + profile.getEmail());
+            checkUnique(findByPhone(phoneNumber), profile, "Phone number " + profile.getPhoneNumber());
+            checkUnique(byAccount.get(profile.getAccountNumber()), profile, "Account " + profile.getAccountNumber());
+            // Two profiles in the same batch may not claim the same key either
+            checkUnique(email.isEmpty() ? null : claimed.put("email:" + email, profile), profile, "Email " + profile.getEmail());
+            checkUnique(phoneNumber.isEmpty() ? null : claimed.put("phone:" + phoneNumber, profile), profile, "Phone number " + profile.getPhoneNumber());
+            checkUnique(claimed.put("account:" + profile.getAccountNumber(), profile), profile, "Account " + profile.getAccountNumber());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (CustomerProfile profile : profiles) {
+            writeProfile(out, profile);
+        }
+        write(bytes.toByteArray());
+        for (CustomerProfile profile : profiles) {
+            unindex(byUsername.get(profile.getUsername()));
+            index(profile);
+        }
+    }
+
+    public synchronized boolean remove(String username) throws IOException {
+        CustomerProfile profile = byUsername.get(username);
+        if (profile == null) {
+            return false;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(REMOVE);
+        out.writeUTF(username);
+        write(bytes.toByteArray());
+        unindex(profile);
+        return true;
+    }
+
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static void checkUnique(CustomerProfile holder, CustomerProfile profile, String what) {
+        if (holder != null && !holder.getUsername().equals(profile.getUsername())) {
+            throw new IllegalArgumentException(what + " is already registered to " + holder.getUsername());
+        }
+    }
+
+    private void index(CustomerProfile profile) {
+        byUsername.put(profile.getUsername(), profile);
+        String email = normalizeEmail(profile.getEmail());
+        if (!email.isEmpty()) {
+            byEmail.put(email, profile);
+        }
+        String phoneNumber = normalizePhone(profile.getPhoneNumber());
+        if (!phoneNumber.isEmpty()) {
+            byPhone.put(phoneNumber, profile);
+        }
+        byAccount.put(profile.getAccountNumber(), profile);
+    }
+
+    private void unindex(CustomerProfile profile) {
+        if (profile == null) {
+            return;
+        }
+        byUsername.remove(profile.getUsername(), profile);
+        byEmail.remove(normalizeEmail(profile.getEmail()), profile);
+        byPhone.remove(normalizePhone(profile.getPhoneNumber()), profile);
+        byAccount.remove(profile.getAccountNumber(), profile);
+    }
+
+    private void write(byte[] records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    // Rewrites the log with one record per live profile and swaps it in once it is on disk
+    private synchronized void compact() throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temporary);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            for (CustomerProfile profile : byUsername.values()) {
+                writeProfile(out, profile);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        channel.close();
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void writeProfile(DataOutputStream out, CustomerProfile profile) throws IOException {
+        out.writeByte(PUT);
+        out.writeUTF(profile.getUsername());
+        out.writeUTF(profile.getEmail());
+        out.writeUTF(profile.getPhoneNumber());
+        out.writeInt(profile.getAccountNumber());
+    }
+
+    // The old registration form appended free-text blocks, password included, to user_details.txt.
+    // Their profiles are carried over once and the file is deleted so the passwords don't linger.
+    void importLegacy(File legacy) throws IOException {
+        if (!legacy.exists()) {
+            return;
+        }
+        List<CustomerProfile> profiles = new ArrayList<>();
+        int skipped = 0;
+        String username = null;
+        String email = "";
+        String phoneNumber = "";
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(legacy), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("Username: ")) {
+                    if (username != null) {
+                        LOG.warning("Skipping legacy profile for " + username + ": no account number");
+                        skipped++;
+                    }
+                    username = line.substring("Username: ".length());
+                } else if (line.startsWith("Email: ")) {
+                    email = line.substring("Email: ".length());
+                } else if (line.startsWith("Phone Number: ")) {
+                    phoneNumber = line.substring("Phone Number: ".length());
+                } else if (line.startsWith("Account Number: ") && username != null) {
+                    String accountNumber = line.substring("Account Number: ".length()).trim();
+                    try {
+                        profiles.add(new CustomerProfile(username, email, phoneNumber, Integer.parseInt(accountNumber)));
+                    } catch (NumberFormatException e) {
+                        LOG.warning("Skipping legacy profile for " + username + ": bad account number " + accountNumber);
+                        skipped++;
+                    }
+                    username = null;
+                    email = "";
+                    phoneNumber = "";
+                }
+            }
+        }
+        if (username != null) {
+            LOG.warning("Skipping legacy profile for " + username + ": no account number");
+            skipped++;
+        }
+        int imported = 0;
+        for (CustomerProfile profile : profiles) {
+            try {
+                put(profile);
+                imported++;
+            } catch (IllegalArgumentException e) {
+                LOG.warning("Skipping legacy profile for " + profile.getUsername() + ": " + e.getMessage());
+                skipped++;
+            }
+        }
+        if (skipped == 0) {
+            Files.delete(legacy.toPath());
+            LOG.info("Imported " + imported + " customer profiles from " + legacy.getName());
+        } else {
+            // Kept under another name, so the skipped entries can be fixed by hand and nothing is imported twice
+            Path kept = legacy.toPath().resolveSibling(legacy.getName() + ".skipped");
+            Files.move(legacy.toPath(), kept, StandardCopyOption.REPLACE_EXISTING);
+            LOG.warning("Imported " + imported + " customer profiles from " + legacy.getName() + " and skipped " + skipped
+                    + "; the original is kept as " + kept.getFileName());
+        }
+    }
+
+    static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Keeps the digits and a leading '+', so "+1 (555) 010-0000" and "+15550100000" match
+    static String normalizePhone(String phoneNumber) {
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (Character.isDigit(c) || (c == '+' && digits.length() == 0)) {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package bank;
+
+class Receipt implements Comparable<Receipt> {
+    private String date;
+    private String transactionId;
+    private String details;
+    private long sortKey; // transaction id, which orders receipts by time
+
+    public Receipt(String date, String transactionId, String details) {
+        this.date = date;
+        this.transactionId = transactionId;
+        this.details = details;
+        try {
+            this.sortKey = Long.parseLong(transactionId);
+        } catch (NumberFormatException e) {
+            this.sortKey = 0;
+        }
+    }
+
+    public Receipt(Transaction transaction, String details) {
+        this(transaction.getDate(), transaction.getTransactionId(), details);
+        this.sortKey = transaction.getId();
+    }
+
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    @Override
+    public int compareTo(Receipt other) {
+        return Long.compare(sortKey, other.sortKey);
+    }
+
+    public String generateReceipt() {
+        StringBuilder receipt = new StringBuilder();
+        receipt.append("Date: ").append(date).append("\n");
+        receipt.append("Transaction ID: ").append(transactionId).append("\n");
+        receipt.append(details).append("\n");
+        return receipt.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package bank;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+class SavingsAccount extends BankAccount {
+    private static final long serialVersionUID = 4375015585159271035L;
+    private double interestRate;
+    private int lastAccrualPeriod; // yyyymm of the last month interest was credited for; see InterestAccrual
+
+    public SavingsAccount(int accountNumber, String accountHolder, int balance, double interestRate) {
+        super(accountNumber, accountHolder, balance);
+        this.interestRate = interestRate;
+    }
+
+    SavingsAccount(int accountNumber, String accountHolder, double balance, TransactionLog transactionLog, SegmentTable segments,
+                   double interestRate, int lastAccrualPeriod) {
+        super(accountNumber, accountHolder, balance, transactionLog, segments);
+        this.interestRate = interestRate;
+        this.lastAccrualPeriod = lastAccrualPeriod;
+    }
+
+    public double getInterestRate() {
+        return interestRate;
+    }
+
+    public int getLastAccrualPeriod() {
+        return lastAccrualPeriod;
+    }
+
+    // Cents of a month of interest on the current balance, or 0 if the period was credited already.
+    // InterestAccrual journals the credit and only then applies it with creditInterest.
+    long interestDue(int period) {
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            if (period <= lastAccrualPeriod) {
+                return 0;
+            }
+            return Math.max(0, Math.round(TransactionLog.toCents(balance) * interestRate / 12));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Applies a journaled credit, skipped the same way replay skips it if the period was credited meanwhile
+    void creditInterest(int period, long timestamp, long id, long amountCents) {
+        ReentrantLock lock = stripeLock();
+        lock.lock();
+        try {
+            if (period > lastAccrualPeriod) {
+                beforeChange();
+                applyAccrual(period, timestamp, id, amountCents);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void replayAccrual(int period, long timestamp, long id, long amountCents) {
+        if (period > lastAccrualPeriod) {
+            applyAccrual(period, timestamp, id, amountCents);
+        }
+    }
+
+    private void applyAccrual(int period, long timestamp, long id, long amountCents) {
+        balance += TransactionLog.toAmount(amountCents);
+        lastAccrualPeriod = period;
+        transactionLog.append(TransactionLog.INTEREST, timestamp, id, amountCents);
+        sealFullSegments();
+    }
+
+    @Override
+    BankAccount copyForSnapshot() {
+        return new SavingsAccount(accountNumber, accountHolder, balance, transactionLog.snapshot(), segments.snapshot(), interestRate, lastAccrualPeriod);
+    }
+}
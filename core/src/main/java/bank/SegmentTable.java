@@ -0,0 +1,132 @@
+package bank;
+
+import java.util.*;
+
+// Locations of an account's sealed history segments, with each segment's timestamp range so
+// range reads can skip segments without loading them, and the balance right after each segment's
+// last entry so a past balance needs at most one segment read
+class SegmentTable {
+    private long[] offsets;
+    private int[] counts;
+    private long[] minTimestamps;
+    private long[] maxTimestamps;
+    private long[] throughTimestamps; // latest timestamp in this segment or any before it
+    private long[] closingBalances; // cents
+    private int size;
+    private int totalEntries;
+    private boolean inTimeOrder = true; // no segment starts before an earlier one ends
+    private boolean frozen;
+
+    public SegmentTable() {
+        allocate(4);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int totalEntries() {
+        return totalEntries;
+    }
+
+    public long offset(int index) {
+        return offsets[index];
+    }
+
+    public int count(int index) {
+        return counts[index];
+    }
+
+    public long minTimestamp(int index) {
+        return minTimestamps[index];
+    }
+
+    public long maxTimestamp(int index) {
+        return maxTimestamps[index];
+    }
+
+    public long closingBalance(int index) {
+        return closingBalances[index];
+    }
+
+    // Index of the first segment holding an entry timestamped after millis, or size() if none does.
+    // The segments before it hold nothing later than millis, whatever order entries were appended in.
+    public int firstAfter(long millis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (throughTimestamps[middle] > millis) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    // Whether every segment from index on holds only entries timestamped after millis. Interest run
+    // replay and pipeline batches can append entries out of time order; until one does, this holds
+    // for every segment after firstAfter(millis) without looking at them.
+    public boolean allAfter(int index, long millis) {
+        if (inTimeOrder && index > 0 && throughTimestamps[index - 1] > millis) {
+            return true;
+        }
+        for (int i = index; i < size; i++) {
+            if (minTimestamps[i] <= millis) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(long offset, int count, long minTimestamp, long maxTimestamp, long closingBalance) {
+        if (frozen) {
+            throw new UnsupportedOperationException("Segment table is read-only");
+        }
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+            minTimestamps = Arrays.copyOf(minTimestamps, size * 2);
+            maxTimestamps = Arrays.copyOf(maxTimestamps, size * 2);
+            throughTimestamps = Arrays.copyOf(throughTimestamps, size * 2);
+            closingBalances = Arrays.copyOf(closingBalances, size * 2);
+        }
+        offsets[size] = offset;
+        counts[size] = count;
+        minTimestamps[size] = minTimestamp;
+        maxTimestamps[size] = maxTimestamp;
+        throughTimestamps[size] = size == 0 ? maxTimestamp : Math.max(throughTimestamps[size - 1], maxTimestamp);
+        closingBalances[size] = closingBalance;
+        if (size > 0 && minTimestamp < throughTimestamps[size - 1]) {
+            inTimeOrder = false;
+        }
+        size++;
+        totalEntries += count;
+    }
+
+    // Read-only copy sharing this table's arrays; see TransactionLog.snapshot
+    public SegmentTable snapshot() {
+        SegmentTable snapshot = new SegmentTable();
+        snapshot.offsets = offsets;
+        snapshot.counts = counts;
+        snapshot.minTimestamps = minTimestamps;
+        snapshot.maxTimestamps = maxTimestamps;
+        snapshot.throughTimestamps = throughTimestamps;
+        snapshot.closingBalances = closingBalances;
+        snapshot.size = size;
+        snapshot.totalEntries = totalEntries;
+        snapshot.inTimeOrder = inTimeOrder;
+        snapshot.frozen = true;
+        return snapshot;
+    }
+
+    private void allocate(int capacity) {
+        offsets = new long[capacity];
+        counts = new int[capacity];
+        minTimestamps = new long[capacity];
+        maxTimestamps = new long[capacity];
+        throughTimestamps = new long[capacity];
+        closingBalances = new long[capacity];
+    }
+}
@@ -0,0 +1,21 @@
+package bank;
+
+// Rewrites an account store with a different number of snapshot shards. Run it with the
+// application stopped:
+//   java -cp core/target/classes bank.ShardRebalancer <accounts file> <shards>
+// The store is opened as usual, which replays the journal, and then checkpointed in the new layout.
+class ShardRebalancer {
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java bank.ShardRebalancer <accounts file> <shards>");
+            return;
+        }
+        int shards = Integer.parseInt(args[1]);
+        BankAccountManager manager = new BankAccountManager(args[0]);
+        int before = manager.getShardCount();
+        manager.reshard(shards);
+        manager.close();
+        System.out.println("Rebalanced " + manager.getAccounts().size() + " accounts from " + before + " to " + shards + " shard(s).");
+        System.exit(0);
+    }
+}
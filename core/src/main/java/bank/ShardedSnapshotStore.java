@@ -0,0 +1,220 @@
+package bank;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+// Snapshot storage split by account number into independent shard files, each encoded, written and
+// read by its own thread. A manifest next to the base path names the shard count and generation of
+// the last complete snapshot; it is replaced only after every shard file of a new generation is on
+// disk, so a crash part-way through a checkpoint leaves the previous generation in force. The
+// manifest it replaces is kept as <base>.shards.previous, along with its shard files.
+class ShardedSnapshotStore {
+    private static final Logger LOG = Logger.getLogger(ShardedSnapshotStore.class.getName());
+    public static final int DEFAULT_SHARDS = Integer.getInteger("bank.shards", Runtime.getRuntime().availableProcessors());
+    static final int MAX_SHARDS = 1 << 16;
+
+    private final String basePath;
+    private final int shardCount;
+
+    public ShardedSnapshotStore(String basePath, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+        }
+        this.basePath = basePath;
+        this.shardCount = shardCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // Fibonacci hashing, so consecutive account numbers spread over every shard
+    public static int shardOf(int accountNumber, int shardCount) {
+        return (int) (((accountNumber * 0x9E3779B9L) & 0xFFFFFFFFL) * shardCount >>> 32);
+    }
+
+    public static boolean exists(String basePath) {
+        return new File(basePath + ".shards").exists() || new File(basePath + ".shards.previous").exists();
+    }
+
+    // Shard count recorded in the manifest, or 0 if there isn't a readable one
+    public static int shardCountOf(String manifestPath) {
+        long[] manifest = readManifest(manifestPath);
+        return manifest == null ? 0 : (int) manifest[0];
+    }
+
+    // Loads the snapshot named by the given manifest (<base>.shards or <base>.shards.previous)
+    public static AccountCodec.Snapshot load(String basePath, String manifestPath) throws IOException {
+        long[] manifest = readManifest(manifestPath);
+        if (manifest == null) {
+            throw new IOException("Missing or unreadable shard manifest " + manifestPath);
+        }
+        final int shards = (int) manifest[0];
+        final long generation = manifest[1];
+        List<Callable<AccountCodec.Snapshot>> readers = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            final Path path = shardPath(basePath, shard, shards, generation);
+            readers.add(new Callable<AccountCodec.Snapshot>() {
+                @Override
+                public AccountCodec.Snapshot call() throws IOException {
+                    AccountCodec.Snapshot snapshot = AccountCodec.readSnapshot(path);
+                    if (snapshot.generation != generation) {
+                        throw new IOException(path + " holds generation " + snapshot.generation + ", expected " + generation);
+                    }
+                    return snapshot;
+                }
+            });
+        }
+        List<BankAccount> accounts = new ArrayList<>();
+        for (AccountCodec.Snapshot snapshot : runAll(readers)) {
+            accounts.addAll(snapshot.accounts);
+        }
+        return new AccountCodec.Snapshot(generation, accounts);
+    }
+
+    // Writes every shard of the given generation in parallel, then commits it by replacing the manifest
+    public void write(Collection<BankAccount> accounts, final long generation) throws IOException {
+        final List<List<BankAccount>> partitions = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            partitions.add(new ArrayList<BankAccount>(accounts.size() / shardCount + 16));
+        }
+        for (BankAccount account : accounts) {
+            partitions.get(shardOf(account.getAccountNumber(), shardCount)).add(account);
+        }
+        List<Callable<AccountCodec.Snapshot>> writers = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            final int index = shard;
+            writers.add(new Callable<AccountCodec.Snapshot>() {
+                @Override
+                public AccountCodec.Snapshot call() throws IOException {
+                    Path path = shardPath(basePath, index, shardCount, generation);
+                    Path temporary = Paths.get(path + ".tmp");
+                    AccountCodec.writeSnapshot(temporary, partitions.get(index), generation);
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    return null;
+                }
+            });
+        }
+        runAll(writers);
+
+        Path manifest = Paths.get(basePath + ".shards");
+        Path temporary = Paths.get(basePath + ".shards.tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+            out.write((shardCount + "\n" + generation + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.getFD().sync();
+        }
+        if (Files.exists(manifest)) {
+            Files.move(manifest, Paths.get(basePath + ".shards.previous"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        removeUnreferenced();
+    }
+
+    // Total size of the current generation's shard files
+    public static long size(String basePath) {
+        long[] manifest = readManifest(basePath + ".shards");
+        long bytes = 0;
+        if (manifest != null) {
+            for (int shard = 0; shard < manifest[0]; shard++) {
+                bytes += shardPath(basePath, shard, (int) manifest[0], manifest[1]).toFile().length();
+            }
+        }
+        return bytes;
+    }
+
+    // Deletes shard files named by neither manifest. Once a previous sharded snapshot exists the
+    // single-file snapshots this store replaced are no longer needed as a fallback either.
+    private void removeUnreferenced() {
+        Set<String> keep = new HashSet<>();
+        boolean hasPrevious = false;
+        for (String manifestPath : new String[] {basePath + ".shards", basePath + ".shards.previous"}) {
+            long[] manifest = readManifest(manifestPath);
+            if (manifest != null) {
+                hasPrevious |= manifestPath.endsWith(".previous");
+                for (int shard = 0; shard < manifest[0]; shard++) {
+                    keep.add(shardPath(basePath, shard, (int) manifest[0], manifest[1]).getFileName().toString());
+                }
+            }
+        }
+        File base = new File(basePath).getAbsoluteFile();
+        final String prefix = base.getName() + ".shard-";
+        File[] files = base.getParentFile().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File directory, String name) {
+                return name.startsWith(prefix);
+            }
+        });
+        if (files != null) {
+            for (File file : files) {
+                if (!keep.contains(file.getName()) && !file.delete()) {
+                    LOG.warning("Could not delete old snapshot shard " + file);
+                }
+            }
+        }
+        if (hasPrevious) {
+            new File(basePath).delete();
+            new File(basePath + ".previous").delete();
+        }
+    }
+
+    private static Path shardPath(String basePath, int shard, int shards, long generation) {
+        return Paths.get(basePath + ".shard-" + shard + "-of-" + shards + "." + generation);
+    }
+
+    // {shard count, generation}, or null if the manifest is missing or malformed
+    private static long[] readManifest(String manifestPath) {
+        try {
+            List<String> lines = Files.readAllLines(Paths.get(manifestPath), StandardCharsets.US_ASCII);
+            if (lines.size() < 2) {
+                return null;
+            }
+            long[] manifest = {Integer.parseInt(lines.get(0).trim()), Long.parseLong(lines.get(1).trim())};
+            return manifest[0] > 0 && manifest[0] <= MAX_SHARDS ? manifest : null;
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // One thread per shard, up to the number of cores; the first failure is rethrown
+    private static <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+        int threads = Math.max(1, Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "snapshot-shard-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading or writing snapshot shards");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Writes an account statement straight from a HistoryCursor to a file. Each row is encoded into a
+// pooled direct buffer that is drained to the channel whenever it fills, so the memory used is one
+// buffer and one history segment however long the statement is.
+class StatementWriter {
+    enum Format { CSV, FIXED_WIDTH }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ROW = 128;
+    private static final int POOLED_BUFFERS = 8;
+    private static final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private static final DateTimeFormatter MINUTE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:").withZone(ZoneId.systemDefault());
+    private static final byte[][] DESCRIPTIONS = new byte[TransactionLog.INTEREST + 1][];
+
+    static {
+        for (byte type = 0; type < DESCRIPTIONS.length; type++) {
+            DESCRIPTIONS[type] = TransactionLog.describe(type).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    static class Summary {
+        final long transactions;
+        final long creditCents;
+        final long debitCents;
+
+        Summary(long transactions, long creditCents, long debitCents) {
+            this.transactions = transactions;
+            this.creditCents = creditCents;
+            this.debitCents = debitCents;
+        }
+
+        public long getTransactions() {
+            return transactions;
+        }
+
+        public double getCredits() {
+            return TransactionLog.toAmount(creditCents);
+        }
+
+        public double getDebits() {
+            return TransactionLog.toAmount(debitCents);
+        }
+    }
+
+    private final Format format;
+    private final byte[] digits = new byte[20];
+    private long cachedMinute = Long.MIN_VALUE;
+    private byte[] minutePrefix;
+
+    public StatementWriter(Format format) {
+        this.format = format;
+    }
+
+    public Summary export(BankAccount account, long fromMillis, long toMillis, Path path) throws IOException {
+        HistoryCursor cursor = account.openHistory(fromMillis, toMillis);
+        ByteBuffer buffer = acquire();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (format == Format.CSV) {
+                putAscii(buffer, "date,transaction_id,type,amount\n");
+            } else {
+                putUtf8(buffer, channel, "Statement for account " + account.getAccountNumber() + " (" + account.getAccountHolder() + ")\n");
+                if (buffer.remaining() < MAX_ROW) {
+                    drain(buffer, channel);
+                }
+                putAscii(buffer, String.format("%-19s %20s %-20s %15s%n", "Date", "Transaction ID", "Type", "Amount"));
+            }
+            long count = 0;
+            long credits = 0;
+            long debits = 0;
+            while (cursor.next()) {
+                if (buffer.remaining() < MAX_ROW) {
+                    drain(buffer, channel);
+                }
+                byte type = cursor.type();
+                long cents = cursor.amountCents();
+                long signed = TransactionLog.isCredit(type) ? cents : -cents;
+                if (signed >= 0) {
+                    credits += signed;
+                } else {
+                    debits -= signed;
+                }
+                writeRow(buffer, cursor.timestamp(), cursor.id(), type, signed);
+                count++;
+            }
+            if (format == Format.FIXED_WIDTH) {
+                if (buffer.remaining() < 4 * MAX_ROW) {
+                    drain(buffer, channel);
+                }
+                putAscii(buffer, String.format("%nTransactions: %d%nTotal credits: %.2f%nTotal debits: %.2f%n",
+                        count, TransactionLog.toAmount(credits), TransactionLog.toAmount(debits)));
+            }
+            drain(buffer, channel);
+            return new Summary(count, credits, debits);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private void writeRow(ByteBuffer buffer, long timestamp, long id, byte type, long signedCents) {
+        byte[] description = type >= 0 && type < DESCRIPTIONS.length ? DESCRIPTIONS[type] : DESCRIPTIONS[0];
+        if (format == Format.CSV) {
+            putTimestamp(buffer, timestamp);
+            buffer.put((byte) ',');
+            putLong(buffer, id, 0);
+            buffer.put((byte) ',');
+            buffer.put(description);
+            buffer.put((byte) ',');
+            putCents(buffer, signedCents, 0);
+        } else {
+            putTimestamp(buffer, timestamp);
+            buffer.put((byte) ' ');
+            putLong(buffer, id, 20);
+            buffer.put((byte) ' ');
+            buffer.put(description);
+            for (int i = description.length; i < 20; i++) {
+                buffer.put((byte) ' ');
+            }
+            buffer.put((byte) ' ');
+            putCents(buffer, signedCents, 15);
+        }
+        buffer.put((byte) '\n');
+    }
+
+    // "yyyy-MM-dd HH:mm:ss" in the same zone as Transaction.getDate(); only the seconds change within a minute
+    private void putTimestamp(ByteBuffer buffer, long timestamp) {
+        long minute = Math.floorDiv(timestamp, 60000L);
+        if (minute != cachedMinute) {
+            minutePrefix = MINUTE_FORMAT.format(Instant.ofEpochMilli(minute * 60000L)).getBytes(StandardCharsets.US_ASCII);
+            cachedMinute = minute;
+        }
+        buffer.put(minutePrefix);
+        int seconds = (int) Math.floorMod(timestamp / 1000, 60L);
+        buffer.put((byte) ('0' + seconds / 10));
+        buffer.put((byte) ('0' + seconds % 10));
+    }
+
+    // Right-aligns within width, or writes just the digits when width is 0
+    private void putLong(ByteBuffer buffer, long value, int width) {
+        int length = 0;
+        boolean negative = value < 0;
+        long remaining = Math.abs(value);
+        do {
+            digits[digits.length - ++length] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        if (negative) {
+            digits[digits.length - ++length] = '-';
+        }
+        for (int i = length; i < width; i++) {
+            buffer.put((byte) ' ');
+        }
+        buffer.put(digits, digits.length - length, length);
+    }
+
+    private void putCents(ByteBuffer buffer, long cents, int width) {
+        long units = Math.abs(cents) / 100;
+        int fraction = (int) (Math.abs(cents) % 100);
+        int length = 0;
+        digits[digits.length - ++length] = (byte) ('0' + fraction % 10);
+        digits[digits.length - ++length] = (byte) ('0' + fraction / 10);
+        digits[digits.length - ++length] = '.';
+        do {
+            digits[digits.length - ++length] = (byte) ('0' + units % 10);
+            units /= 10;
+        } while (units > 0);
+        if (cents < 0) {
+            digits[digits.length - ++length] = '-';
+        }
+        for (int i = length; i < width; i++) {
+            buffer.put((byte) ' ');
+        }
+        buffer.put(digits, digits.length - length, length);
+    }
+
+    private static void putAscii(ByteBuffer buffer, String text) {
+        buffer.put(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // For text holding the holder's name, which need not be ASCII and may not fit in the buffer
+    private static void putUtf8(ByteBuffer buffer, FileChannel channel, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain(buffer, channel);
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private static void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (pool.size() < POOLED_BUFFERS) {
+            pool.offer(buffer);
+        }
+    }
+}
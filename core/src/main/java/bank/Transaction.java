@@ -0,0 +1,98 @@
+package bank;
+
+import java.io.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+class Transaction implements Serializable{
+    private static final long serialVersionUID = -7296053674468405910L; // matches files written before it was declared
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // Only these four are serialized, for histories saved before TransactionLog existed;
+    // the string fields are otherwise filled in lazily from the primitive ones
+    private String date;
+    private String transactionId;
+    private double amount;
+    private String description;
+    private transient long timestamp;
+    private transient long id;
+    private transient long amountCents;
+    private transient byte type;
+
+    public Transaction(double amount,String description) {
+        this(System.currentTimeMillis(), TransactionIdGenerator.next(), TransactionLog.toCents(amount), TransactionLog.typeOf(description));
+        this.description = description;
+    }
+
+    Transaction(long timestamp, long id, long amountCents, byte type) {
+        this.timestamp = timestamp;
+        this.id = id;
+        this.amountCents = amountCents;
+        this.amount = TransactionLog.toAmount(amountCents);
+        this.type = type;
+    }
+
+    // Converts a transaction deserialized from a baseline .ser file
+    Transaction upgrade() {
+        long timestamp;
+        try {
+            timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(date).getTime();
+        } catch (ParseException | NullPointerException e) {
+            timestamp = 0;
+        }
+        long id;
+        try {
+            id = Long.parseLong(transactionId);
+        } catch (NumberFormatException e) {
+            id = 0;
+        }
+        Transaction transaction = new Transaction(timestamp, id, TransactionLog.toCents(amount), TransactionLog.typeOf(description));
+        transaction.date = date;
+        return transaction;
+    }
+
+
+    public String getDate() {
+        if (date == null) {
+            date = DATE_FORMAT.format(Instant.ofEpochMilli(timestamp));
+        }
+        return date;
+    }
+
+    public String getTransactionId() {
+        if (transactionId == null) {
+            transactionId = String.valueOf(id);
+        }
+        return transactionId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public String getDescription() {
+        if (description == null) {
+            description = TransactionLog.describe(type);
+        }
+        return description;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public byte getType() {
+        return type;
+    }
+}
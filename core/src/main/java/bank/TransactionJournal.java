@@ -0,0 +1,635 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+class TransactionJournal {
+    private static final Logger LOG = Logger.getLogger(TransactionJournal.class.getName());
+    public static final byte BATCH = 5; // several records that must be replayed all together or not at all
+    public static final byte ENTRY = 6; // one TransactionLog entry
+    public static final byte VERSIONED_ACCOUNT = 8; // full account state in AccountCodec form, tagged with the codec version
+    public static final byte RUN_PART = 9; // part of a run of records that only counts once its RUN_COMMIT is journaled
+    public static final byte RUN_COMMIT = 10;
+    public static final byte ACCRUAL = 11; // interest credited for a period; only found inside RUN_PART
+    // Inside a RUN_PART, a VERSIONED_ACCOUNT record opens an account as part of the run; see writeAccount
+
+    static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private long generation;
+    private long size;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+
+    // Group commit: records are only buffered by the appending thread. One journal-sync thread flushes
+    // and fsyncs everything buffered so far once the earliest waiting caller's deadline arrives, so a
+    // burst of writers shares a single write and a single fsync.
+    private long appended; // records written so far, across generations; guarded by this
+    private volatile long synced; // records known to be on disk
+    private final ThreadLocal<long[]> lastAppended = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[] {-1};
+        }
+    };
+    private final CRC32 crc = new CRC32(); // guarded by this
+    private ByteBuffer entryBuffer = ByteBuffer.allocate(128); // guarded by this; see appendEntry
+    private final Object syncLock = new Object(); // orders an fsync against rotation and close; taken before this
+    private final Object waitLock = new Object(); // guards waiters and syncDeadline; taken after this
+    private final TreeMap<Long, List<PendingDurable<?>>> waiters = new TreeMap<>();
+    private long syncDeadline = Long.MAX_VALUE;
+    private boolean stopped;
+
+    private static class PendingDurable<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final T result;
+
+        PendingDurable(T result) {
+            this.result = result;
+        }
+    }
+
+    public TransactionJournal(String filePath) {
+        this.file = new File(filePath);
+        Thread syncThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                syncLoop();
+            }
+        }, "journal-sync " + file.getName());
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    // Replays every intact record written since the snapshot onto the map, then opens the journal for appending.
+    // Archived journals are replayed first, oldest generation first; any generation older than the snapshot
+    // was already folded into it and is skipped. A torn tail is dropped, but a record that passes its
+    // checksum and still cannot be applied fails recovery, since skipping it would silently lose money.
+    public int recover(Map<String, BankAccount> accountMap, long snapshotGeneration) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                return recoverLocked(accountMap, snapshotGeneration);
+            }
+        }
+    }
+
+    private int recoverLocked(Map<String, BankAccount> accountMap, long snapshotGeneration) throws IOException {
+        int[] applied = new int[1];
+        // Parts of runs whose RUN_COMMIT has not been seen yet, by run id
+        Map<Long, List<byte[]>> openRuns = new HashMap<>();
+        long nextGeneration = snapshotGeneration;
+        for (Map.Entry<Long, File> archive : archivedJournals().entrySet()) {
+            if (archive.getKey() >= snapshotGeneration) {
+                replayFile(archive.getValue(), accountMap, openRuns, applied);
+            }
+            nextGeneration = Math.max(nextGeneration, archive.getKey() + 1);
+        }
+        long validLength = 0;
+        long journalGeneration = snapshotGeneration;
+        if (file.exists() && file.length() >= HEADER_SIZE) {
+            journalGeneration = readGeneration(file);
+            if (journalGeneration >= snapshotGeneration) {
+                validLength = replayFile(file, accountMap, openRuns, applied);
+            }
+        }
+        if (!openRuns.isEmpty()) {
+            LOG.warning("Discarded " + openRuns.size() + " uncommitted journal run(s)");
+        }
+        if (validLength == 0 || journalGeneration < snapshotGeneration) {
+            // A crash between archiving a journal and starting the next leaves no active journal
+            reset(nextGeneration);
+        } else {
+            // Drop a torn record left behind by a crash in the middle of an append
+            if (validLength < file.length()) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(validLength);
+                }
+            }
+            generation = journalGeneration;
+            size = validLength;
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE));
+        }
+        return applied[0];
+    }
+
+    // Applies every intact record of one journal file and returns the length of that intact prefix
+    private static long replayFile(File journalFile, Map<String, BankAccount> accountMap, Map<Long, List<byte[]>> openRuns,
+                                   int[] applied) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            in.readLong();
+            long validLength = HEADER_SIZE;
+            while (true) {
+                byte[] payload = readRecord(in);
+                if (payload == null) {
+                    return validLength;
+                }
+                try {
+                    apply(payload, accountMap, openRuns);
+                } catch (IOException | RuntimeException e) {
+                    throw new IOException("Bad journal record at offset " + validLength + " of " + journalFile, e);
+                }
+                validLength += 4 + payload.length + 8;
+                applied[0]++;
+            }
+        }
+    }
+
+    private static long readGeneration(File journalFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journalFile))) {
+            return in.readLong();
+        }
+    }
+
+    // Archived journals are named <journal>.<generation>
+    private TreeMap<Long, File> archivedJournals() {
+        TreeMap<Long, File> archives = new TreeMap<>();
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        File[] candidates = directory == null ? null : directory.listFiles();
+        if (candidates == null) {
+            return archives;
+        }
+        for (File candidate : candidates) {
+            String name = candidate.getName();
+            if (name.startsWith(prefix)) {
+                try {
+                    archives.put(Long.parseLong(name.substring(prefix.length())), candidate);
+                } catch (NumberFormatException e) {
+                    // not an archived journal
+                }
+            }
+        }
+        return archives;
+    }
+
+    // Written when an account is added or replaced
+    public void appendAccount(BankAccount account) throws IOException {
+        byte[] accountBytes = AccountCodec.encode(account);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(accountBytes.length + 64);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(VERSIONED_ACCOUNT);
+        payload.writeUTF(account.getAccountHolder());
+        payload.writeShort(AccountCodec.VERSION);
+        payload.writeInt(accountBytes.length);
+        payload.write(accountBytes);
+        append(bytes.toByteArray());
+    }
+
+    // Called for every deposit and withdrawal, so the record is encoded into a reused buffer rather
+    // than allocated; the bytes are the same writeEntry produces after its length prefix
+    public void appendEntry(BankAccount account, byte type, long timestamp, long id, long amountCents) throws IOException {
+        String holder = account.getAccountHolder();
+        int holderLength = modifiedUtf8Length(holder);
+        if (holderLength > 65535) {
+            throw new UTFDataFormatException("Account holder name too long");
+        }
+        synchronized (this) {
+            int length = 1 + 2 + holderLength + 1 + 8 + 8 + 8;
+            if (entryBuffer.capacity() < length) {
+                entryBuffer = ByteBuffer.allocate(length);
+            }
+            ByteBuffer buffer = entryBuffer;
+            buffer.clear();
+            buffer.put(ENTRY);
+            buffer.putShort((short) holderLength);
+            for (int i = 0; i < holder.length(); i++) {
+                char c = holder.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    buffer.put((byte) c);
+                } else if (c <= 0x07FF) {
+                    buffer.put((byte) (0xC0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                } else {
+                    buffer.put((byte) (0xE0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+            buffer.put(type);
+            buffer.putLong(timestamp);
+            buffer.putLong(id);
+            buffer.putLong(amountCents);
+            writeRecord(buffer.array(), length);
+        }
+    }
+
+    // Encodes one ENTRY, length-prefixed, into a batch the caller is building; see appendEntries
+    static void writeEntry(DataOutputStream batch, BankAccount account, byte type, long timestamp, long id, long amountCents) throws IOException {
+        String holder = account.getAccountHolder();
+        batch.writeInt(1 + 2 + modifiedUtf8Length(holder) + 1 + 8 + 8 + 8);
+        batch.writeByte(ENTRY);
+        batch.writeUTF(holder);
+        batch.writeByte(type);
+        batch.writeLong(timestamp);
+        batch.writeLong(id);
+        batch.writeLong(amountCents);
+    }
+
+    // Journals count entries encoded with writeEntry as one BATCH record, replayed all together or not at all
+    public void appendEntries(int count, ByteArrayOutputStream entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() + 8);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(BATCH);
+        payload.writeInt(count);
+        entries.writeTo(payload);
+        append(bytes.toByteArray());
+    }
+
+    // Number of bytes writeUTF uses for the characters, not counting its two-byte length
+    private static int modifiedUtf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    // Encodes a new account into a run part the caller is building, in the same form appendAccount writes
+    static void writeAccount(DataOutputStream part, BankAccount account) throws IOException {
+        byte[] accountBytes = AccountCodec.encode(account);
+        part.writeByte(VERSIONED_ACCOUNT);
+        part.writeUTF(account.getAccountHolder());
+        part.writeShort(AccountCodec.VERSION);
+        part.writeInt(accountBytes.length);
+        part.write(accountBytes);
+    }
+
+    // Encodes one ACCRUAL into a run part the caller is building; see appendRunPart
+    static void writeAccrual(DataOutputStream part, BankAccount account, int period, long timestamp, long id, long amountCents) throws IOException {
+        part.writeByte(ACCRUAL);
+        part.writeUTF(account.getAccountHolder());
+        part.writeInt(period);
+        part.writeLong(timestamp);
+        part.writeLong(id);
+        part.writeLong(amountCents);
+    }
+
+    // Records of a run are replayed only if appendRunCommit for the same run id follows them,
+    // so a run that dies halfway leaves no trace after recovery
+    public void appendRunPart(long runId, int count, ByteArrayOutputStream records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.size() + 16);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(RUN_PART);
+        payload.writeLong(runId);
+        payload.writeInt(count);
+        records.writeTo(payload);
+        append(bytes.toByteArray());
+    }
+
+    public void appendRunCommit(long runId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(RUN_COMMIT);
+        payload.writeLong(runId);
+        append(bytes.toByteArray());
+    }
+
+    private void append(byte[] payload) throws IOException {
+        synchronized (this) {
+            writeRecord(payload, payload.length);
+        }
+    }
+
+    // Archives the current journal under its generation and starts an empty one for the next generation.
+    // The archive stays until discardBefore drops it, so a snapshot that fails to write loses nothing.
+    public void rotate(long newGeneration) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                checkNotClosed();
+                closeFile();
+                if (file.exists()) {
+                    Files.move(file.toPath(), new File(file.getPath() + "." + generation).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                resetLocked(newGeneration);
+            }
+        }
+    }
+
+    // Deletes archived journals older than the given generation
+    public synchronized void discardBefore(long oldestNeeded) {
+        for (Map.Entry<Long, File> archive : archivedJournals().headMap(oldestNeeded).entrySet()) {
+            if (!archive.getValue().delete()) {
+                LOG.warning("Could not delete old journal " + archive.getValue());
+            }
+        }
+    }
+
+    // Starts an empty journal for the given generation, discarding all records
+    public void reset(long newGeneration) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                checkNotClosed();
+                closeFile();
+                resetLocked(newGeneration);
+            }
+        }
+    }
+
+    private void resetLocked(long newGeneration) throws IOException {
+        fileOut = new FileOutputStream(file, false);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE));
+        out.writeLong(newGeneration);
+        out.flush();
+        generation = newGeneration;
+        size = HEADER_SIZE;
+    }
+
+    // Flushes and fsyncs what is buffered, then stops the sync thread. A closed journal stays closed.
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                try {
+                    closeFile();
+                } finally {
+                    synchronized (waitLock) {
+                        stopped = true;
+                        waitLock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    // Must hold this. Rotating or resetting a closed journal would open a file that nothing syncs.
+    private void checkNotClosed() throws IOException {
+        synchronized (waitLock) {
+            if (stopped) {
+                throw new IOException("Journal is closed: " + file);
+            }
+        }
+    }
+
+    // Everything written to the outgoing file is made durable before it is closed
+    private void closeFile() throws IOException {
+        if (out != null) {
+            out.flush();
+            fileOut.getChannel().force(false);
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+        completeThrough(appended, null);
+    }
+
+    // Completes with the given result once every record this thread has appended so far is on disk
+    public <T> CompletableFuture<T> whenDurable(T result, Durability durability) {
+        long sequence = lastAppended.get()[0];
+        PendingDurable<T> pending = new PendingDurable<>(result);
+        synchronized (waitLock) {
+            if (sequence <= synced) {
+                pending.future.complete(result);
+                return pending.future;
+            }
+            if (stopped) {
+                // Nothing will sync it any more
+                pending.future.completeExceptionally(new IOException("Journal is closed: " + file));
+                return pending.future;
+            }
+            List<PendingDurable<?>> atSequence = waiters.get(sequence);
+            if (atSequence == null) {
+                atSequence = new ArrayList<>();
+                waiters.put(sequence, atSequence);
+            }
+            atSequence.add(pending);
+            requestSync(durability);
+        }
+        return pending.future;
+    }
+
+    // Must hold waitLock
+    private void requestSync(Durability durability) {
+        long deadline = System.nanoTime() + durability.maxDelayNanos;
+        if (deadline < syncDeadline) {
+            syncDeadline = deadline;
+            waitLock.notifyAll();
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            synchronized (waitLock) {
+                try {
+                    while (!stopped && System.nanoTime() < syncDeadline) {
+                        if (syncDeadline == Long.MAX_VALUE) {
+                            waitLock.wait();
+                        } else {
+                            TimeUnit.NANOSECONDS.timedWait(waitLock, syncDeadline - System.nanoTime());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (stopped) {
+                    return;
+                }
+                syncDeadline = Long.MAX_VALUE;
+            }
+            sync();
+        }
+    }
+
+    // One flush and one fsync for everything appended so far; appends carry on while the fsync runs
+    private void sync() {
+        synchronized (syncLock) {
+            long target;
+            FileChannel channel;
+            try {
+                synchronized (this) {
+                    if (out == null) {
+                        return;
+                    }
+                    out.flush();
+                    target = appended;
+                    channel = fileOut.getChannel();
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Error syncing journal", e);
+                completeThrough(Long.MAX_VALUE, e);
+                return;
+            }
+            completeThrough(target, null);
+        }
+    }
+
+    private void completeThrough(long sequence, IOException failure) {
+        List<PendingDurable<?>> done = new ArrayList<>();
+        synchronized (waitLock) {
+            if (failure == null && sequence > synced) {
+                synced = sequence;
+            }
+            Map<Long, List<PendingDurable<?>>> ready = waiters.headMap(sequence, true);
+            for (List<PendingDurable<?>> atSequence : ready.values()) {
+                done.addAll(atSequence);
+            }
+            ready.clear();
+        }
+        for (PendingDurable<?> pending : done) {
+            if (failure == null) {
+                complete(pending);
+            } else {
+                pending.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static <T> void complete(PendingDurable<T> pending) {
+        pending.future.complete(pending.result);
+    }
+
+    // Writes the first length bytes of payload as one record
+    private void writeRecord(byte[] payload, int length) throws IOException {
+        if (out == null) {
+            throw new IOException("Journal is not open: " + file);
+        }
+        crc.reset();
+        crc.update(payload, 0, length);
+        out.writeInt(length);
+        out.write(payload, 0, length);
+        out.writeLong(crc.getValue());
+        size += 4 + length + 8;
+        appended++;
+        lastAppended.get()[0] = appended;
+        // Even records nobody waits for reach the disk within the ASYNC delay
+        synchronized (waitLock) {
+            requestSync(Durability.ASYNC);
+        }
+    }
+
+    // Returns null at the end of the journal or at the first torn or corrupt record
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            long expected = in.readLong();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return crc.getValue() == expected ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // A length read from inside a record, checked against what is left of the record
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Corrupt journal record: length " + length);
+        }
+        return length;
+    }
+
+    private static void checkAccountVersion(short version) throws IOException {
+        if (version != AccountCodec.VERSION) {
+            throw new IOException("Unsupported account record version in journal: " + version);
+        }
+    }
+
+    private static void apply(byte[] payload, Map<String, BankAccount> accountMap, Map<Long, List<byte[]>> openRuns) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        if (type == BATCH) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] record = new byte[readLength(in)];
+                in.readFully(record);
+                apply(record, accountMap, openRuns);
+            }
+            return;
+        }
+        if (type == RUN_PART) {
+            long runId = in.readLong();
+            List<byte[]> parts = openRuns.get(runId);
+            if (parts == null) {
+                parts = new ArrayList<>();
+                openRuns.put(runId, parts);
+            }
+            parts.add(payload);
+            return;
+        }
+        if (type == RUN_COMMIT) {
+            List<byte[]> parts = openRuns.remove(in.readLong());
+            if (parts != null) {
+                for (byte[] part : parts) {
+                    applyRunPart(part, accountMap);
+                }
+            }
+            return;
+        }
+        if (type != VERSIONED_ACCOUNT && type != ENTRY) {
+            throw new IOException("Unknown journal record type " + type);
+        }
+        String holder = in.readUTF();
+        if (type == VERSIONED_ACCOUNT) {
+            checkAccountVersion(in.readShort());
+            byte[] accountBytes = new byte[readLength(in)];
+            in.readFully(accountBytes);
+            accountMap.put(holder, AccountCodec.decode(ByteBuffer.wrap(accountBytes)));
+            return;
+        }
+        byte entryType = in.readByte();
+        if (!TransactionLog.isKnownType(entryType)) {
+            throw new IOException("Unknown transaction type in journal: " + entryType);
+        }
+        Transaction transaction = new Transaction(in.readLong(), in.readLong(), in.readLong(), entryType);
+        BankAccount account = accountMap.get(holder);
+        if (account != null) {
+            account.replayTransaction(transaction);
+        }
+    }
+
+    private static void applyRunPart(byte[] payload, Map<String, BankAccount> accountMap) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        in.readByte();
+        in.readLong();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            if (type == VERSIONED_ACCOUNT) {
+                String holder = in.readUTF();
+                checkAccountVersion(in.readShort());
+                byte[] accountBytes = new byte[readLength(in)];
+                in.readFully(accountBytes);
+                accountMap.put(holder, AccountCodec.decode(ByteBuffer.wrap(accountBytes)));
+                continue;
+            }
+            if (type != ACCRUAL) {
+                throw new IOException("Unexpected record in journal run");
+            }
+            BankAccount account = accountMap.get(in.readUTF());
+            int period = in.readInt();
+            long timestamp = in.readLong();
+            long id = in.readLong();
+            long amountCents = in.readLong();
+            if (account instanceof SavingsAccount) {
+                ((SavingsAccount) account).replayAccrual(period, timestamp, id, amountCents);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package bank;
+
+import java.io.*;
+import java.util.*;
+
+// Per-account transaction history stored as primitive columns instead of one object per transaction.
+// Appending never allocates except when a column grows; Transaction objects are only built on read.
+class TransactionLog {
+    public static final byte INITIAL = 0;
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAWL = 2;
+    public static final byte WITHDRAW = 3; // checking account withdrawal
+    public static final byte LOAN_PAYMENT = 4;
+    public static final byte INTEREST = 5; // posted by InterestAccrual
+    private static final String[] DESCRIPTIONS = {"Initial Transaction", "Deposit", "Withdrawl", "Withdraw", "Loan Payment", "Interest"};
+
+    private long[] timestamps;
+    private long[] ids;
+    private long[] amounts; // cents
+    private byte[] types;
+    private int size;
+    private boolean frozen;
+
+    public TransactionLog() {
+        this(8);
+    }
+
+    public TransactionLog(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+
+    public static byte typeOf(String description) {
+        for (byte type = 0; type < DESCRIPTIONS.length; type++) {
+            if (DESCRIPTIONS[type].equals(description)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transaction type: " + description);
+    }
+
+    public static boolean isKnownType(byte type) {
+        return type >= 0 && type < DESCRIPTIONS.length;
+    }
+
+    public static String describe(byte type) {
+        return DESCRIPTIONS[type];
+    }
+
+    // Whether a transaction of this type adds to the account balance
+    public static boolean isCredit(byte type) {
+        return type == INITIAL || type == DEPOSIT || type == INTEREST;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void append(byte type, long timestamp, long id, long amountCents) {
+        checkNotFrozen();
+        if (size == timestamps.length) {
+            grow(size + (size >> 1) + 1);
+        }
+        timestamps[size] = timestamp;
+        ids[size] = id;
+        amounts[size] = amountCents;
+        types[size] = type;
+        size++;
+    }
+
+    public void append(Transaction transaction) {
+        append(transaction.getType(), transaction.getTimestamp(), transaction.getId(), transaction.getAmountCents());
+    }
+
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public long id(int index) {
+        return ids[index];
+    }
+
+    public long amountCents(int index) {
+        return amounts[index];
+    }
+
+    public byte type(int index) {
+        return types[index];
+    }
+
+    public Transaction get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Transaction(timestamps[index], ids[index], amounts[index], types[index]);
+    }
+
+    // Read-only copy of the entries recorded so far that shares this log's columns. Entries are never
+    // modified once appended and a grown column is a fresh array, so it stays valid while this log grows.
+    public TransactionLog snapshot() {
+        TransactionLog snapshot = new TransactionLog(timestamps, ids, amounts, types, size);
+        snapshot.frozen = true;
+        return snapshot;
+    }
+
+    public void freeze() {
+        frozen = true;
+    }
+
+    public TransactionLog copyOfRange(int from, int to) {
+        int count = to - from;
+        return new TransactionLog(Arrays.copyOfRange(timestamps, from, from + Math.max(count, 8)),
+                Arrays.copyOfRange(ids, from, from + Math.max(count, 8)),
+                Arrays.copyOfRange(amounts, from, from + Math.max(count, 8)),
+                Arrays.copyOfRange(types, from, from + Math.max(count, 8)), count);
+    }
+
+    public long minTimestamp(int from, int to) {
+        long min = Long.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, timestamps[i]);
+        }
+        return min;
+    }
+
+    public long maxTimestamp(int from, int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, timestamps[i]);
+        }
+        return max;
+    }
+
+    // Net effect of entries [from, to) on the balance, in cents
+    public long signedSum(int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += isCredit(types[i]) ? amounts[i] : -amounts[i];
+        }
+        return sum;
+    }
+
+    // Net effect of the entries in [from, to) timestamped after millis
+    public long signedSumAfter(int from, int to, long millis) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            if (timestamps[i] > millis) {
+                sum += isCredit(types[i]) ? amounts[i] : -amounts[i];
+            }
+        }
+        return sum;
+    }
+
+    private TransactionLog(long[] timestamps, long[] ids, long[] amounts, byte[] types, int size) {
+        this.timestamps = timestamps;
+        this.ids = ids;
+        this.amounts = amounts;
+        this.types = types;
+        this.size = size;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Transaction log is read-only");
+        }
+    }
+
+    private void allocate(int capacity) {
+        timestamps = new long[capacity];
+        ids = new long[capacity];
+        amounts = new long[capacity];
+        types = new byte[capacity];
+    }
+
+    private void grow(int capacity) {
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        types = Arrays.copyOf(types, capacity);
+    }
+}
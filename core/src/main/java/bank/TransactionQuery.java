@@ -0,0 +1,295 @@
+package bank;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+// Aggregate queries over the transaction history of every account, e.g. deposits per day, withdrawals
+// per account type or the accounts with the most volume in a month. Accounts are split across a
+// fork-join pool, and each scans its own columns through a HistoryCursor, so segments whose
+// timestamp range misses the query window are never loaded. Amounts are in cents and always
+// positive; restrict the transaction types to separate credits from debits.
+class TransactionQuery {
+    enum GroupBy { NONE, DAY, ACCOUNT, ACCOUNT_TYPE, TRANSACTION_TYPE }
+
+    public static final int LEAF_SIZE = 256; // accounts per fork-join leaf
+    private static final String[] ACCOUNT_TYPES = {"Basic", "Savings", "Checking", "Loan/Mortgage"};
+
+    public static class Group {
+        final long key;
+        long count;
+        long sumCents;
+        long minCents = Long.MAX_VALUE;
+        long maxCents = Long.MIN_VALUE;
+        private final GroupBy groupBy;
+
+        Group(GroupBy groupBy, long key) {
+            this.groupBy = groupBy;
+            this.key = key;
+        }
+
+        void add(long cents) {
+            count++;
+            sumCents += cents;
+            minCents = Math.min(minCents, cents);
+            maxCents = Math.max(maxCents, cents);
+        }
+
+        void merge(Group other) {
+            count += other.count;
+            sumCents += other.sumCents;
+            minCents = Math.min(minCents, other.minCents);
+            maxCents = Math.max(maxCents, other.maxCents);
+        }
+
+        // Epoch day, account number, AccountCodec kind or TransactionLog type, depending on the grouping
+        public long getKey() {
+            return key;
+        }
+
+        public String getLabel() {
+            switch (groupBy) {
+                case DAY:
+                    return LocalDate.ofEpochDay(key).toString();
+                case ACCOUNT:
+                    return Long.toString(key);
+                case ACCOUNT_TYPE:
+                    return ACCOUNT_TYPES[(int) key];
+                case TRANSACTION_TYPE:
+                    return TransactionLog.describe((byte) key);
+                default:
+                    return "All";
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return TransactionLog.toAmount(sumCents);
+        }
+
+        public double getMin() {
+            return TransactionLog.toAmount(minCents);
+        }
+
+        public double getMax() {
+            return TransactionLog.toAmount(maxCents);
+        }
+
+        public double getAverage() {
+            return count == 0 ? 0 : TransactionLog.toAmount(sumCents) / count;
+        }
+
+        @Override
+        public String toString() {
+            return getLabel() + ": count=" + count + " sum=" + getSum() + " min=" + getMin() + " max=" + getMax();
+        }
+    }
+
+    public static class Result {
+        public final GroupBy groupBy;
+        public final List<Group> groups; // ordered by key
+        public final long scanned; // transactions inside the window
+        public final long segmentsRead;
+        public final long segmentsSkipped;
+        public final long elapsedMillis;
+
+        Result(GroupBy groupBy, List<Group> groups, long scanned, long segmentsRead, long segmentsSkipped, long elapsedMillis) {
+            this.groupBy = groupBy;
+            this.groups = groups;
+            this.scanned = scanned;
+            this.segmentsRead = segmentsRead;
+            this.segmentsSkipped = segmentsSkipped;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        // The n groups with the largest sums, largest first
+        public List<Group> top(int n) {
+            List<Group> sorted = new ArrayList<>(groups);
+            Collections.sort(sorted, new Comparator<Group>() {
+                @Override
+                public int compare(Group a, Group b) {
+                    return Long.compare(b.sumCents, a.sumCents);
+                }
+            });
+            return sorted.subList(0, Math.min(n, sorted.size()));
+        }
+
+        @Override
+        public String toString() {
+            return groups.size() + " groups from " + scanned + " transactions in " + elapsedMillis + " ms ("
+                    + segmentsRead + " segments read, " + segmentsSkipped + " skipped)";
+        }
+    }
+
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+    private int transactionTypes = -1; // bit per TransactionLog type
+    private int accountTypes = -1; // bit per AccountCodec kind
+    private GroupBy groupBy = GroupBy.NONE;
+    private ZoneId zone = ZoneId.systemDefault();
+
+    // Both ends inclusive, as for BankAccount.getTransactions
+    public TransactionQuery between(long fromMillis, long toMillis) {
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        return this;
+    }
+
+    public TransactionQuery transactionTypes(byte... types) {
+        transactionTypes = 0;
+        for (byte type : types) {
+            transactionTypes |= 1 << type;
+        }
+        return this;
+    }
+
+    public TransactionQuery accountTypes(byte... kinds) {
+        accountTypes = 0;
+        for (byte kind : kinds) {
+            accountTypes |= 1 << kind;
+        }
+        return this;
+    }
+
+    public TransactionQuery groupBy(GroupBy groupBy) {
+        this.groupBy = groupBy;
+        return this;
+    }
+
+    // Time zone the DAY grouping uses to split days
+    public TransactionQuery zone(ZoneId zone) {
+        this.zone = zone;
+        return this;
+    }
+
+    public Result run(BankAccountManager manager) {
+        return run(manager, ForkJoinPool.commonPool());
+    }
+
+    public Result run(BankAccountManager manager, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        List<BankAccount> selected = new ArrayList<>();
+        for (BankAccount account : manager.getAccounts()) {
+            if ((accountTypes & (1 << AccountCodec.kindOf(account))) != 0) {
+                selected.add(account);
+            }
+        }
+        Partial partial = pool.invoke(new Scan(selected.toArray(new BankAccount[0]), 0, selected.size()));
+        List<Group> groups = new ArrayList<>(partial.groups.values());
+        Collections.sort(groups, new Comparator<Group>() {
+            @Override
+            public int compare(Group a, Group b) {
+                return Long.compare(a.key, b.key);
+            }
+        });
+        return new Result(groupBy, groups, partial.scanned, partial.segmentsRead, partial.segmentsSkipped,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static class Partial {
+        final Map<Long, Group> groups = new HashMap<>();
+        long scanned;
+        long segmentsRead;
+        long segmentsSkipped;
+
+        Partial merge(Partial other) {
+            Partial into = groups.size() >= other.groups.size() ? this : other;
+            Partial from = into == this ? other : this;
+            for (Group group : from.groups.values()) {
+                Group existing = into.groups.get(group.key);
+                if (existing == null) {
+                    into.groups.put(group.key, group);
+                } else {
+                    existing.merge(group);
+                }
+            }
+            into.scanned += from.scanned;
+            into.segmentsRead += from.segmentsRead;
+            into.segmentsSkipped += from.segmentsSkipped;
+            return into;
+        }
+    }
+
+    private class Scan extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+        private final BankAccount[] accounts;
+        private final int from;
+        private final int to;
+        // Bounds of the day the last DAY key was computed for, so the zone rules are consulted once a day
+        private long dayStart = Long.MAX_VALUE;
+        private long dayEnd = Long.MIN_VALUE;
+        private long day;
+
+        Scan(BankAccount[] accounts, int from, int to) {
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                Scan left = new Scan(accounts, from, middle);
+                left.fork();
+                Partial right = new Scan(accounts, middle, to).compute();
+                return left.join().merge(right);
+            }
+            Partial partial = new Partial();
+            int types = transactionTypes;
+            for (int i = from; i < to; i++) {
+                BankAccount account = accounts[i];
+                HistoryCursor cursor = account.openHistory(fromMillis, toMillis);
+                // Consecutive rows nearly always share a group, so the map is only consulted when the key changes
+                Group group = null;
+                while (cursor.next()) {
+                    byte type = cursor.type();
+                    if ((types & (1 << type)) == 0) {
+                        continue;
+                    }
+                    long key = keyOf(account, type, cursor.timestamp());
+                    if (group == null || group.key != key) {
+                        group = partial.groups.get(key);
+                        if (group == null) {
+                            group = new Group(groupBy, key);
+                            partial.groups.put(key, group);
+                        }
+                    }
+                    group.add(cursor.amountCents());
+                    partial.scanned++;
+                }
+                partial.segmentsRead += cursor.segmentsRead();
+                partial.segmentsSkipped += cursor.segmentsSkipped();
+            }
+            return partial;
+        }
+
+        private long keyOf(BankAccount account, byte type, long timestamp) {
+            switch (groupBy) {
+                case DAY:
+                    if (timestamp < dayStart || timestamp >= dayEnd) {
+                        LocalDate date = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+                        day = date.toEpochDay();
+                        dayStart = date.atStartOfDay(zone).toInstant().toEpochMilli();
+                        dayEnd = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                    }
+                    return day;
+                case ACCOUNT:
+                    return account.getAccountNumber();
+                case ACCOUNT_TYPE:
+                    return AccountCodec.kindOf(account);
+                case TRANSACTION_TYPE:
+                    return type;
+                default:
+                    return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package bank;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Transfer settlement in the style of the LMAX Disruptor. Requests are written into a preallocated
+// ring by any number of producers, which claim slots with a single atomic increment and take no lock.
+// One settlement thread owns the business logic: it takes whatever has been published, up to
+// MAX_BATCH at a time, checks each transfer against the source account's withdrawal rules, applies
+// both legs and journals the whole batch as one BATCH record. While it does, it holds the stripe of
+// every account the batch names (see lockStripes), so Ledger's locking operations and checkpoints on
+// those accounts see whole batches or none of one, and accounts in other stripes carry on. The two
+// modes can run side by side, but hot accounts should only be moved through one of them.
+class TransferPipeline {
+    private static final Logger LOG = Logger.getLogger(TransferPipeline.class.getName());
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("bank.ringSize", 1 << 16);
+    static final int MAX_BATCH = 1024;
+    private static final byte SETTLED = 1;
+    private static final byte REJECTED = 2;
+    private static final byte FAILED = 3;
+
+    private final BankAccountManager manager;
+    private final Durability durability;
+    private final int capacity;
+    private final int mask;
+
+    // The ring, as parallel arrays indexed by sequence & mask
+    private final int[] sources;
+    private final int[] targets;
+    private final long[] amounts;
+    private final AtomicReferenceArray<CompletableFuture<Boolean>> futures; // plain accesses, ordered by published
+    private final AtomicLongArray published; // sequence last published into each slot
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long consumed = -1; // written only by the settlement thread
+
+    // Scratch for the batch being settled, owned by the settlement thread
+    private final int[] batchSources = new int[MAX_BATCH];
+    private final int[] batchTargets = new int[MAX_BATCH];
+    private final BankAccount[] sourceAccounts = new BankAccount[MAX_BATCH];
+    private final BankAccount[] targetAccounts = new BankAccount[MAX_BATCH];
+    private final byte[] outcomes = new byte[MAX_BATCH];
+    private final byte[] debitTypes = new byte[MAX_BATCH];
+    private final long[] debitIds = new long[MAX_BATCH];
+    private final long[] creditIds = new long[MAX_BATCH];
+    private final double[] previousBalances = new double[MAX_BATCH * 2]; // source then target for each settled transfer
+    private final boolean[] lockedStripes = new boolean[Ledger.STRIPES.size()];
+    private final ByteArrayOutputStream entries = new ByteArrayOutputStream(MAX_BATCH * 128);
+    private final DataOutputStream entryOut = new DataOutputStream(entries);
+
+    private volatile long settled;
+    private volatile long rejected;
+    private volatile long failed;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+    private final Thread settler;
+
+    public TransferPipeline(BankAccountManager manager, Durability durability) {
+        this(manager, durability, DEFAULT_CAPACITY);
+    }
+
+    public TransferPipeline(BankAccountManager manager, Durability durability, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.manager = manager;
+        this.durability = durability;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.sources = new int[capacity];
+        this.targets = new int[capacity];
+        this.amounts = new long[capacity];
+        this.futures = new AtomicReferenceArray<>(capacity);
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.settler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                settle();
+            }
+        }, "transfer-settlement");
+        settler.setDaemon(true);
+        settler.start();
+    }
+
+    // Queues a transfer without allocating; returns its sequence, which settledThrough() passes once it is applied
+    public long submit(int fromAccountNumber, int toAccountNumber, long amountCents) {
+        return publish(fromAccountNumber, toAccountNumber, amountCents, null);
+    }
+
+    // Completes with whether the transfer was accepted, once its batch is durable; see Durability
+    public CompletableFuture<Boolean> transfer(int fromAccountNumber, int toAccountNumber, double amount) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        publish(fromAccountNumber, toAccountNumber, TransactionLog.toCents(amount), future);
+        return future;
+    }
+
+    // Highest sequence whose transfer has been applied (accepted or rejected)
+    public long settledThrough() {
+        return consumed;
+    }
+
+    public long getSettled() {
+        return settled;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    // Transfers that were not applied because their batch could not be journaled or settling it failed
+    public long getFailed() {
+        return failed;
+    }
+
+    // Settles everything already submitted, then stops the settlement thread
+    public void close() {
+        running = false;
+        LockSupport.unpark(settler);
+        try {
+            settler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The slot is claimed before running is checked. If running is still true then, close() has not
+    // begun, so the settlement thread will see the claim before it stops. If close() came first, the
+    // thread may still be waiting for this sequence, so the slot is filled with an empty transfer,
+    // which settles as rejected, before giving up.
+    private long publish(int fromAccountNumber, int toAccountNumber, long amountCents, CompletableFuture<Boolean> future) {
+        long sequence = claimed.incrementAndGet();
+        if (!running) {
+            fill(sequence, 0, 0, 0, null);
+            throw new IllegalStateException("Transfer pipeline is closed");
+        }
+        fill(sequence, fromAccountNumber, toAccountNumber, amountCents, future);
+        return sequence;
+    }
+
+    private void fill(long sequence, int fromAccountNumber, int toAccountNumber, long amountCents, CompletableFuture<Boolean> future) {
+        // Wait for the settlement thread to free the slot if the ring has wrapped around to it
+        int idle = 0;
+        while (sequence - capacity > consumed) {
+            if (!settler.isAlive()) {
+                return; // closed and drained; nothing will read the slot
+            }
+            idle = backOff(idle);
+        }
+        int slot = (int) sequence & mask;
+        sources[slot] = fromAccountNumber;
+        targets[slot] = toAccountNumber;
+        amounts[slot] = amountCents;
+        futures.setPlain(slot, future);
+        published.lazySet(slot, sequence);
+        if (sleeping) {
+            LockSupport.unpark(settler);
+        }
+    }
+
+    private void settle() {
+        int idle = 0;
+        while (true) {
+            long next = consumed + 1;
+            int available = 0;
+            while (available < MAX_BATCH && published.get((int) (next + available) & mask) == next + available) {
+                available++;
+            }
+            if (available > 0) {
+                List<CompletableFuture<Boolean>> batchFutures = takeFutures(next, available);
+                try {
+                    settleBatch(next, available, batchFutures);
+                } catch (RuntimeException e) {
+                    // One bad batch must not stop settlement; its transfers fail rather than hang
+                    LOG.log(Level.SEVERE, "Error settling transfer batch", e);
+                    if (batchFutures != null) {
+                        for (CompletableFuture<Boolean> future : batchFutures) {
+                            if (future != null) {
+                                future.completeExceptionally(e);
+                            }
+                        }
+                    }
+                    Arrays.fill(sourceAccounts, 0, available, null);
+                    Arrays.fill(targetAccounts, 0, available, null);
+                    consumed = next + available - 1;
+                }
+                idle = 0;
+            } else if (!running && claimed.get() < next) {
+                return;
+            } else if (idle < 200) {
+                idle = backOff(idle);
+            } else {
+                // Producers unpark us when they see this flag; the timeout covers a publish that raced it
+                sleeping = true;
+                if (published.get((int) next & mask) != next && running) {
+                    LockSupport.parkNanos(1000000L);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    // Null when no transfer in the batch came with a future
+    private List<CompletableFuture<Boolean>> takeFutures(long first, int count) {
+        List<CompletableFuture<Boolean>> batchFutures = null;
+        for (int i = 0; i < count; i++) {
+            int slot = (int) (first + i) & mask;
+            CompletableFuture<Boolean> future = futures.getPlain(slot);
+            if (future != null) {
+                if (batchFutures == null) {
+                    batchFutures = new ArrayList<>(Collections.<CompletableFuture<Boolean>>nCopies(count, null));
+                }
+                batchFutures.set(i, future);
+                futures.setPlain(slot, null);
+            }
+        }
+        return batchFutures;
+    }
+
+    private void settleBatch(long first, int count, List<CompletableFuture<Boolean>> batchFutures) {
+        for (int i = 0; i < count; i++) {
+            int slot = (int) (first + i) & mask;
+            batchSources[i] = sources[slot];
+            batchTargets[i] = targets[slot];
+            outcomes[i] = FAILED; // until checked, so a transfer an error cuts short fails with the batch
+        }
+        // Accounts are resolved before the stripes are taken, as Ledger.transfer does, since the index lock comes first
+        manager.getAccounts(batchSources, count, sourceAccounts);
+        manager.getAccounts(batchTargets, count, targetAccounts);
+        TransactionJournal journal = manager.getJournal();
+        entries.reset();
+        int legs = 0;
+        long accepted = 0;
+        Exception failure = null;
+        long timestamp = System.currentTimeMillis();
+        lockStripes(count);
+        try {
+            try {
+                // Balances move first so later transfers in the batch are checked against earlier ones;
+                // nothing is recorded until the batch is journaled, and a failed write puts them back
+                for (int i = 0; i < count; i++) {
+                    BankAccount source = sourceAccounts[i];
+                    BankAccount target = targetAccounts[i];
+                    long cents = amounts[(int) (first + i) & mask];
+                    if (source == null || target == null || source == target || cents <= 0 || !source.allowsWithdrawal(cents)) {
+                        outcomes[i] = REJECTED;
+                        continue;
+                    }
+                    byte debit = source.withdrawalType();
+                    debitTypes[i] = debit;
+                    debitIds[i] = TransactionIdGenerator.next();
+                    creditIds[i] = TransactionIdGenerator.next();
+                    TransactionJournal.writeEntry(entryOut, source, debit, timestamp, debitIds[i], cents);
+                    TransactionJournal.writeEntry(entryOut, target, TransactionLog.DEPOSIT, timestamp, creditIds[i], cents);
+                    previousBalances[legs] = source.moveBalance(debit, cents);
+                    previousBalances[legs + 1] = target.moveBalance(TransactionLog.DEPOSIT, cents);
+                    legs += 2;
+                    accepted++;
+                    outcomes[i] = SETTLED;
+                }
+                if (legs > 0) {
+                    journal.appendEntries(legs, entries);
+                }
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+            if (failure == null) {
+                for (int i = 0; i < count; i++) {
+                    if (outcomes[i] == SETTLED) {
+                        long cents = amounts[(int) (first + i) & mask];
+                        sourceAccounts[i].record(debitTypes[i], timestamp, debitIds[i], cents);
+                        targetAccounts[i].record(TransactionLog.DEPOSIT, timestamp, creditIds[i], cents);
+                    }
+                }
+            } else {
+                LOG.log(Level.SEVERE, "Error settling transfer batch of " + count + "; none applied", failure);
+                for (int i = count - 1; i >= 0; i--) {
+                    if (outcomes[i] == SETTLED) {
+                        legs -= 2;
+                        targetAccounts[i].restoreBalance(previousBalances[legs + 1]);
+                        sourceAccounts[i].restoreBalance(previousBalances[legs]);
+                        outcomes[i] = FAILED;
+                    }
+                }
+            }
+        } finally {
+            unlockStripes();
+        }
+        if (failure == null) {
+            settled += accepted;
+            rejected += count - accepted;
+        } else {
+            int failedCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (outcomes[i] == FAILED) {
+                    failedCount++;
+                }
+            }
+            failed += failedCount;
+            rejected += count - failedCount;
+        }
+        if (batchFutures != null) {
+            if (failure == null) {
+                completeWhenDurable(journal, batchFutures, Arrays.copyOf(outcomes, count));
+            } else {
+                completeFailed(batchFutures, Arrays.copyOf(outcomes, count), failure);
+            }
+        }
+        Arrays.fill(sourceAccounts, 0, count, null);
+        Arrays.fill(targetAccounts, 0, count, null);
+        consumed = first + count - 1;
+    }
+
+    // Takes the stripe of every account the batch names, in index order as Ledger.transfer does,
+    // so transfers outside the batch's stripes carry on while it settles
+    private void lockStripes(int count) {
+        for (int i = 0; i < count; i++) {
+            lockedStripes[Ledger.STRIPES.indexOf(batchSources[i])] = true;
+            lockedStripes[Ledger.STRIPES.indexOf(batchTargets[i])] = true;
+        }
+        for (int stripe = 0; stripe < lockedStripes.length; stripe++) {
+            if (lockedStripes[stripe]) {
+                Ledger.STRIPES.get(stripe).lock();
+            }
+        }
+    }
+
+    private void unlockStripes() {
+        for (int stripe = lockedStripes.length - 1; stripe >= 0; stripe--) {
+            if (lockedStripes[stripe]) {
+                lockedStripes[stripe] = false;
+                Ledger.STRIPES.get(stripe).unlock();
+            }
+        }
+    }
+
+    private void completeWhenDurable(TransactionJournal journal, final List<CompletableFuture<Boolean>> batchFutures, final byte[] batchOutcomes) {
+        journal.whenDurable(null, durability).whenComplete(new BiConsumer<Object, Throwable>() {
+            @Override
+            public void accept(Object ignored, Throwable error) {
+                for (int i = 0; i < batchOutcomes.length; i++) {
+                    CompletableFuture<Boolean> future = batchFutures.get(i);
+                    if (future == null) {
+                        continue;
+                    }
+                    if (error != null) {
+                        future.completeExceptionally(error);
+                    } else {
+                        future.complete(batchOutcomes[i] == SETTLED);
+                    }
+                }
+            }
+        });
+    }
+
+    // Transfers that were not applied fail with the error; the ones the batch rejected still complete with false
+    private static void completeFailed(List<CompletableFuture<Boolean>> batchFutures, byte[] batchOutcomes, Exception error) {
+        for (int i = 0; i < batchOutcomes.length; i++) {
+            CompletableFuture<Boolean> future = batchFutures.get(i);
+            if (future == null) {
+                continue;
+            }
+            if (batchOutcomes[i] == FAILED) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(false);
+            }
+        }
+    }
+
+    // Spins briefly, then yields, then sleeps in short naps
+    private static int backOff(int idle) {
+        if (idle < 100) {
+            Thread.onSpinWait();
+        } else if (idle < 150) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50000L);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,134 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountCodecTest {
+    @TempDir
+    Path directory;
+
+    private static List<BankAccount> sampleAccounts() {
+        BankAccount basic = new BankAccount(1, "Zoë €uro", 25);
+        basic.deposit(10.5);
+        SavingsAccount savings = new SavingsAccount(2, "sam", 500, 0.02);
+        savings.withdraw(20);
+        CheckingAccount checking = new CheckingAccount(3, "cat", 100, 50);
+        checking.withdraw(130);
+        LoanMortgageAccount loan = new LoanMortgageAccount(4, "lou", 10000, 0.05, 12);
+        loan.makeLoanPayment(loan.getMonthlyPayment());
+        return Arrays.<BankAccount>asList(basic, savings, checking, loan);
+    }
+
+    @Test
+    void roundTripsEveryAccountType() throws IOException {
+        for (BankAccount account : sampleAccounts()) {
+            BankAccount decoded = AccountCodec.decode(ByteBuffer.wrap(AccountCodec.encode(account)));
+            assertSameAccount(account, decoded);
+        }
+    }
+
+    @Test
+    void roundTripsASnapshot() throws IOException {
+        Path path = directory.resolve("accounts.snapshot");
+        List<BankAccount> accounts = sampleAccounts();
+        AccountCodec.writeSnapshot(path, accounts, 42);
+
+        assertFalse(AccountCodec.isLegacySnapshot(path));
+        AccountCodec.Snapshot snapshot = AccountCodec.readSnapshot(path);
+        assertEquals(42, snapshot.generation);
+        assertEquals(accounts.size(), snapshot.accounts.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            assertSameAccount(accounts.get(i), snapshot.accounts.get(i));
+        }
+    }
+
+    @Test
+    void corruptSnapshotFailsWithIOException() throws IOException {
+        Path path = directory.resolve("accounts.snapshot");
+        AccountCodec.writeSnapshot(path, sampleAccounts(), 7);
+        byte[] good = Files.readAllBytes(path);
+
+        // Any damaged byte is caught, never surfacing as a runtime exception or a huge allocation
+        for (int i = 0; i < good.length; i++) {
+            for (int value : new int[] {0x00, 0x7F, 0x80, 0xFF}) {
+                if (good[i] == (byte) value) {
+                    continue;
+                }
+                byte[] damaged = good.clone();
+                damaged[i] = (byte) value;
+                Files.write(path, damaged);
+                try {
+                    AccountCodec.readSnapshot(path);
+                    fail("byte " + i + " set to " + value + " went unnoticed");
+                } catch (IOException expected) {
+                }
+            }
+        }
+        for (int length : new int[] {0, 3, good.length / 2, good.length - 1}) {
+            Files.write(path, Arrays.copyOf(good, length));
+            try {
+                AccountCodec.readSnapshot(path);
+                fail("snapshot cut to " + length + " bytes went unnoticed");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    void refusesAHolderTooLongForItsLengthField() throws IOException {
+        char[] name = new char[0x10000];
+        Arrays.fill(name, 'a');
+        try {
+            AccountCodec.encode(new BankAccount(1, new String(name), 0));
+            fail("a holder of 65536 bytes should not be encoded");
+        } catch (UTFDataFormatException expected) {
+        }
+        name[0] = '\u00e9'; // two bytes in UTF-8, so still too long with one character fewer
+        try {
+            AccountCodec.encode(new BankAccount(1, new String(name, 0, name.length - 1), 0));
+            fail("a holder of 65536 bytes should not be encoded");
+        } catch (UTFDataFormatException expected) {
+        }
+        BankAccount longest = new BankAccount(1, new String(name, 0, name.length - 2), 0);
+        assertSameAccount(longest, AccountCodec.decode(ByteBuffer.wrap(AccountCodec.encode(longest))));
+    }
+
+    private static void assertSameAccount(BankAccount expected, BankAccount actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getAccountNumber(), actual.getAccountNumber());
+        assertEquals(expected.getAccountHolder(), actual.getAccountHolder());
+        assertEquals(expected.getBalance(), actual.getBalance(), 1e-9);
+        if (expected instanceof SavingsAccount) {
+            assertEquals(((SavingsAccount) expected).getInterestRate(), ((SavingsAccount) actual).getInterestRate(), 1e-12);
+            assertEquals(((SavingsAccount) expected).getLastAccrualPeriod(), ((SavingsAccount) actual).getLastAccrualPeriod());
+        } else if (expected instanceof CheckingAccount) {
+            assertEquals(((CheckingAccount) expected).getOverdraftLimit(), ((CheckingAccount) actual).getOverdraftLimit(), 1e-9);
+        } else if (expected instanceof LoanMortgageAccount) {
+            LoanMortgageAccount loan = (LoanMortgageAccount) expected;
+            LoanMortgageAccount decoded = (LoanMortgageAccount) actual;
+            assertEquals(loan.getLoanAmount(), decoded.getLoanAmount(), 1e-9);
+            assertEquals(loan.getInterestRate(), decoded.getInterestRate(), 1e-12);
+            assertEquals(loan.getLoanTermMonths(), decoded.getLoanTermMonths());
+            assertEquals(loan.getPaymentsMade(), decoded.getPaymentsMade());
+        }
+        List<Transaction> transactions = expected.getTransactions();
+        List<Transaction> decodedTransactions = actual.getTransactions();
+        assertEquals(transactions.size(), decodedTransactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            assertEquals(transactions.get(i).getId(), decodedTransactions.get(i).getId());
+            assertEquals(transactions.get(i).getType(), decodedTransactions.get(i).getType());
+            assertEquals(transactions.get(i).getAmountCents(), decodedTransactions.get(i).getAmountCents());
+            assertEquals(transactions.get(i).getTimestamp(), decodedTransactions.get(i).getTimestamp());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmortizationTableTest {
+    @Test
+    void levelPaymentMatchesTheClosedForm() {
+        AmortizationTable table = AmortizationTable.forLoan(0.06, 360);
+        assertEquals(1199.10, table.payment(200000), 0.005);
+        assertEquals(536.82, AmortizationTable.forLoan(0.05, 360).payment(100000), 0.005);
+        assertEquals(1199.10 * 360 - 200000, table.totalInterest(200000), 2);
+
+        double r = 0.06 / 12;
+        double expected = 200000 * r / (1 - Math.pow(1 + r, -360));
+        assertEquals(expected, table.payment(200000), 1e-6);
+        assertSame(table, AmortizationTable.forLoan(0.06, 360));
+    }
+
+    @Test
+    void balanceRunsDownToZero() {
+        AmortizationTable table = AmortizationTable.forLoan(0.06, 360);
+        assertEquals(200000, table.balanceAfter(200000, 0), 1e-6);
+        assertEquals(1000, table.interestDue(200000, 0), 1e-6);
+        assertEquals(200000 * 1.005, table.payoffQuote(200000, 0), 1e-6);
+        assertEquals(0, table.balanceAfter(200000, 360), 1e-9);
+
+        // Each balance is the previous one plus a month's interest, less the payment
+        double payment = table.payment(200000);
+        double balance = 200000;
+        for (int k = 1; k <= 360; k++) {
+            balance = balance * 1.005 - payment;
+            assertEquals(balance, table.balanceAfter(200000, k), 1e-4);
+        }
+    }
+
+    @Test
+    void scheduleSplitsEachPayment() {
+        AmortizationSchedule schedule = AmortizationTable.forLoan(0.048, 24).schedule(12000);
+        assertEquals(24, schedule.size());
+        double principal = 0;
+        double interest = 0;
+        for (int k = 0; k < schedule.size(); k++) {
+            assertEquals(schedule.payment(), schedule.interest(k) + schedule.principal(k), 1e-9);
+            principal += schedule.principal(k);
+            interest += schedule.interest(k);
+        }
+        assertEquals(12000, principal, 1e-6);
+        assertEquals(schedule.payment() * 24 - 12000, interest, 1e-6);
+        assertEquals(0, schedule.balance(23), 1e-9);
+    }
+
+    @Test
+    void zeroRateSplitsThePrincipalEvenly() {
+        AmortizationTable table = AmortizationTable.forLoan(0, 12);
+        assertEquals(100, table.payment(1200), 1e-9);
+        assertEquals(900, table.balanceAfter(1200, 3), 1e-9);
+        assertEquals(0, table.totalInterest(1200), 1e-9);
+        try {
+            AmortizationTable.forLoan(0.05, 0);
+            fail("a loan with no term should be refused");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    void loanPaymentStaysLevelOverTheRemainingTerm() {
+        LoanMortgageAccount loan = new LoanMortgageAccount(1, "alice", 200000, 0.06, 360);
+        double payment = loan.getMonthlyPayment();
+        assertEquals(1199.10, payment, 0.005);
+        assertEquals(AmortizationTable.forLoan(0.06, 360).balanceAfter(200000, 12), loan.getOutstandingPrincipal(12), 1e-6);
+
+        loan.makeLoanPayment(payment);
+        assertEquals(1, loan.getPaymentsMade());
+        assertEquals(359, loan.getRemainingTermMonths());
+        assertEquals(200000 - (payment - 1000), loan.getLoanAmount(), 0.01);
+        assertEquals(payment, loan.getMonthlyPayment(), 0.01);
+        assertEquals(loan.getLoanAmount() * 1.005, loan.getPayoffQuote(), 1e-6);
+
+        // An underpayment is refused
+        loan.makeLoanPayment(payment / 2);
+        assertEquals(1, loan.getPaymentsMade());
+    }
+}
@@ -0,0 +1,55 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceAsOfTest {
+    @TempDir
+    Path directory;
+
+    // Entries arrive mostly in time order, with one in twenty backdated by up to 20 seconds, as
+    // settlements carrying the time they were submitted do
+    @Test
+    void answersMatchAFullScanWhenHistoryIsOutOfOrder() {
+        BankAccountManager manager = new BankAccountManager(directory.resolve("accounts.ser").toString());
+        BankAccount account = new BankAccount(1, "alice", 0);
+        manager.saveAccountDetails(account);
+        Random random = new Random(1);
+        long base = 1_000_000L;
+        List<long[]> entries = new ArrayList<>();
+        ReentrantLock lock = Ledger.STRIPES.forAccount(1);
+        for (int i = 0; i < 3000; i++) {
+            long timestamp = base + i * 10L - (random.nextInt(20) == 0 ? random.nextInt(20000) : 0);
+            long cents = 1 + random.nextInt(100);
+            byte type = random.nextBoolean() ? TransactionLog.DEPOSIT : TransactionLog.WITHDRAWL;
+            lock.lock();
+            try {
+                account.settle(type, timestamp, TransactionIdGenerator.next(), cents);
+            } finally {
+                lock.unlock();
+            }
+            entries.add(new long[] {timestamp, TransactionLog.isCredit(type) ? cents : -cents});
+        }
+        assertTrue(account.segments.size() > 1, "history should span several segments");
+
+        for (int q = 0; q < 2000; q++) {
+            long millis = base - 100 + random.nextInt(31000);
+            long expected = 0;
+            for (long[] entry : entries) {
+                if (entry[0] <= millis) {
+                    expected += entry[1];
+                }
+            }
+            assertEquals(expected, account.balanceCentsAsOf(millis), "balance as of " + millis);
+        }
+        manager.close();
+    }
+}
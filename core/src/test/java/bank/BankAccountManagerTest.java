@@ -0,0 +1,46 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankAccountManagerTest {
+    @TempDir
+    Path directory;
+
+    private BankAccountManager open() {
+        return new BankAccountManager(directory.resolve("accounts.ser").toString());
+    }
+
+    @Test
+    void holderKeepsTheirAccountNumber() throws Exception {
+        BankAccountManager manager = open();
+        BankService service = new BankService(manager, Durability.SYNC);
+        service.openAccount(new SavingsAccount(1, "alice", 100, 0.01)).get(10, TimeUnit.SECONDS);
+
+        try {
+            service.openAccount(new SavingsAccount(2, "alice", 500, 0.01)).get(10, TimeUnit.SECONDS);
+            fail("a second account number for the same holder should be refused");
+        } catch (ExecutionException expected) {
+            assertInstanceOf(IllegalArgumentException.class, expected.getCause());
+        }
+        assertEquals(1, manager.getAccount("alice").getAccountNumber());
+        assertNull(manager.getAccount(2));
+
+        // Replacing the holder's account under the same number still works
+        service.openAccount(new CheckingAccount(1, "alice", 250, 50)).get(10, TimeUnit.SECONDS);
+        assertTrue(manager.getAccount("alice") instanceof CheckingAccount);
+        manager.close();
+
+        BankAccountManager reopened = open();
+        assertEquals(1, reopened.getAccount("alice").getAccountNumber());
+        assertEquals(250, reopened.getAccount("alice").getBalance(), 1e-9);
+        assertNull(reopened.getAccount(2));
+        reopened.close();
+    }
+}
@@ -0,0 +1,129 @@
+package bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankHttpServerTest {
+    @TempDir
+    Path directory;
+
+    private BankAccountManager manager;
+    private BankService service;
+    private BankHttpServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws Exception {
+        manager = new BankAccountManager(directory.resolve("accounts.ser").toString());
+        service = new BankService(manager, Durability.SYNC);
+        service.openAccount(new CheckingAccount(1, "alice", 100, 50)).get(10, TimeUnit.SECONDS);
+        service.openAccount(new SavingsAccount(2, "bob", 10, 0.01)).get(10, TimeUnit.SECONDS);
+        server = new BankHttpServer(service, 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+        service.shutdown();
+        manager.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void accountsAreLookedUpByNumberAndHolder() throws Exception {
+        HttpResponse<String> response = send("GET", "/accounts/1", null);
+        assertEquals(200, response.statusCode());
+        assertEquals("application/json; charset=utf-8", response.headers().firstValue("Content-Type").orElse(null));
+        Map<String, String> account = BankHttpServer.parseFlatObject(response.body());
+        assertEquals("1", account.get("accountNumber"));
+        assertEquals("alice", account.get("holder"));
+        assertEquals("CheckingAccount", account.get("type"));
+        assertEquals(100, Double.parseDouble(account.get("balance")), 1e-9);
+        assertEquals(50, Double.parseDouble(account.get("overdraftLimit")), 1e-9);
+
+        account = BankHttpServer.parseFlatObject(send("GET", "/accounts?holder=bob", null).body());
+        assertEquals("2", account.get("accountNumber"));
+        assertEquals("0.01", account.get("interestRate"));
+
+        assertEquals(404, send("GET", "/accounts/9", null).statusCode());
+        assertEquals(400, send("GET", "/accounts/x", null).statusCode());
+        assertEquals(400, send("GET", "/accounts", null).statusCode());
+        assertEquals(404, send("GET", "/accounts/1/unknown", null).statusCode());
+    }
+
+    @Test
+    void depositsAndWithdrawalsMoveTheBalance() throws Exception {
+        HttpResponse<String> response = send("POST", "/accounts/1/deposit", "{\"amount\": 25.5}");
+        assertEquals(200, response.statusCode());
+        Map<String, String> result = BankHttpServer.parseFlatObject(response.body());
+        assertEquals("true", result.get("ok"));
+        assertEquals(125.5, Double.parseDouble(result.get("balance")), 1e-9);
+
+        result = BankHttpServer.parseFlatObject(send("POST", "/accounts/1/withdraw?amount=150", null).body());
+        assertEquals("true", result.get("ok"));
+        assertEquals(-24.5, Double.parseDouble(result.get("balance")), 1e-9);
+
+        // Past the overdraft limit the withdrawal is declined, not an error
+        response = send("POST", "/accounts/1/withdraw", "{\"amount\": 100}");
+        assertEquals(200, response.statusCode());
+        assertEquals("false", BankHttpServer.parseFlatObject(response.body()).get("ok"));
+        assertEquals(-24.5, manager.getAccount(1).getBalance(), 1e-9);
+
+        assertEquals(400, send("POST", "/accounts/1/deposit", "{\"amount\": -5}").statusCode());
+        assertEquals(400, send("POST", "/accounts/1/deposit", "{\"amount\": \"lots\"}").statusCode());
+        assertEquals(400, send("POST", "/accounts/1/deposit", "{\"amount\": 5").statusCode());
+        assertEquals(405, send("GET", "/accounts/1/deposit?amount=5", null).statusCode());
+        assertEquals(-24.5, manager.getAccount(1).getBalance(), 1e-9);
+    }
+
+    @Test
+    void transfersAndHistoryPages() throws Exception {
+        HttpResponse<String> response = send("POST", "/transfers", "{\"from\": 1, \"to\": 2, \"amount\": 30}");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"ok\":true}", response.body());
+        assertEquals(70, manager.getAccount(1).getBalance(), 1e-9);
+        assertEquals(40, manager.getAccount(2).getBalance(), 1e-9);
+        assertEquals(404, send("POST", "/transfers", "{\"from\": 1, \"to\": 9, \"amount\": 30}").statusCode());
+
+        response = send("GET", "/accounts/1/transactions?offset=1&limit=5", null);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"accountNumber\":1,\"offset\":1,\"transactions\":[{\"id\":"), response.body());
+        assertTrue(response.body().contains("\"amount\":30.0}]}"), response.body());
+        assertEquals(400, send("GET", "/accounts/1/transactions?limit=" + (BankHttpServer.MAX_PAGE_SIZE + 1), null).statusCode());
+    }
+
+    @Test
+    void flatObjectsParseAndQuoteRoundTrips() {
+        Map<String, String> members = BankHttpServer.parseFlatObject(" { \"a\" : 1 , \"b\":\"x\\\"y\\u00e9\", \"c\":true } ");
+        assertEquals("1", members.get("a"));
+        assertEquals("x\"yé", members.get("b"));
+        assertEquals("true", members.get("c"));
+        assertTrue(BankHttpServer.parseFlatObject("{}").isEmpty());
+        assertEquals("\"a\\\"b\\\\c\\u000a\"", BankHttpServer.quote("a\"b\\c\n"));
+        try {
+            BankHttpServer.parseFlatObject("{\"a\":1");
+            fail("an unterminated object should be refused");
+        } catch (BankHttpServer.HttpError expected) {
+            assertEquals(400, expected.status);
+        }
+    }
+}
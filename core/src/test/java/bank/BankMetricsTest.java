@@ -0,0 +1,81 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankMetricsTest {
+    @Test
+    void histogramQuantilesAreWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtQuantile(0.99));
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(5000500, histogram.getMeanNanos(), 1e-6);
+        assertEquals(10000000, histogram.getMaxNanos());
+        assertEquals(5000000, histogram.getValueAtQuantile(0.5), 5000000 * 0.035);
+        assertEquals(9900000, histogram.getValueAtQuantile(0.99), 9900000 * 0.035);
+        assertEquals(10000000, histogram.getValueAtQuantile(1.0));
+        assertTrue(histogram.getValueAtQuantile(0.5) >= 5000000);
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        for (int i = 0; i < 64; i++) {
+            histogram.record(i);
+        }
+        assertEquals(0, histogram.getValueAtQuantile(0.01));
+        assertEquals(31, histogram.getValueAtQuantile(0.5));
+        assertEquals(63, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    void operationsCountCallsAndErrors() {
+        long deposits = BankMetrics.DEPOSIT.getCount();
+        long depositErrors = BankMetrics.DEPOSIT.getErrors();
+        long withdrawals = BankMetrics.WITHDRAW.getCount();
+        long withdrawalErrors = BankMetrics.WITHDRAW.getErrors();
+
+        CheckingAccount account = new CheckingAccount(1, "alice", 100, 50);
+        account.deposit(10);
+        assertTrue(account.withdraw(150));
+        assertFalse(account.withdraw(100)); // past the overdraft limit
+
+        assertEquals(deposits + 1, BankMetrics.DEPOSIT.getCount());
+        assertEquals(depositErrors, BankMetrics.DEPOSIT.getErrors());
+        assertEquals(withdrawals + 2, BankMetrics.WITHDRAW.getCount());
+        assertEquals(withdrawalErrors + 1, BankMetrics.WITHDRAW.getErrors());
+        assertTrue(BankMetrics.dump().contains("withdraw"));
+    }
+
+    @Test
+    void operationsAreReadableOverJmx() throws Exception {
+        OperationMetrics metrics = new OperationMetrics("test");
+        metrics.record(System.nanoTime(), true);
+        metrics.record(System.nanoTime(), false);
+        assertEquals(2L, metrics.getAttribute("Count"));
+        assertEquals(1L, metrics.getAttribute("Errors"));
+        assertEquals(0.5, (Double) metrics.getAttribute("ErrorRate"), 1e-9);
+        try {
+            metrics.getAttribute("Missing");
+            fail("an unknown attribute should be refused");
+        } catch (AttributeNotFoundException expected) {
+        }
+
+        BankMetrics.DEPOSIT.record(System.nanoTime(), true);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("bank:type=Operation,name=deposit");
+        assertTrue(server.isRegistered(name));
+        assertEquals(BankMetrics.DEPOSIT.getCount(), server.getAttribute(name, "Count"));
+        assertEquals(BankMetrics.all().length, server.queryNames(new ObjectName("bank:type=Operation,*"), null).size());
+    }
+}
@@ -0,0 +1,82 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CredentialStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void plaintextFileIsHashedWhenOpened() throws Exception {
+        Path path = directory.resolve("credentials.txt");
+        Files.write(path, List.of("alice:wonderland", "bob:builder", "alice:rabbit"), StandardCharsets.UTF_8);
+
+        CredentialStore store = new CredentialStore(path.toString(), 1, 4);
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        for (String line : lines) {
+            assertTrue(line.startsWith("alice:pbkdf2-sha256$") || line.startsWith("bob:pbkdf2-sha256$"), line);
+            assertFalse(line.contains("wonderland") || line.contains("builder") || line.contains("rabbit"), line);
+        }
+        assertFalse(Files.exists(directory.resolve("credentials.txt.tmp")));
+
+        // The last plaintext line for a user is the password that survives the migration
+        assertTrue(store.verify("alice", "rabbit".toCharArray()).get(30, TimeUnit.SECONDS));
+        assertFalse(store.verify("alice", "wonderland".toCharArray()).get(30, TimeUnit.SECONDS));
+        assertTrue(store.verify("bob", "builder".toCharArray()).get(30, TimeUnit.SECONDS));
+        assertFalse(store.verify("carol", "builder".toCharArray()).get(30, TimeUnit.SECONDS));
+        store.close();
+    }
+
+    @Test
+    void olderIterationCountIsRehashedOnVerify() throws Exception {
+        Path path = directory.resolve("credentials.txt");
+        Files.write(path, List.of("alice:" + hash("wonderland", 1000)), StandardCharsets.UTF_8);
+
+        CredentialStore store = new CredentialStore(path.toString(), 1, 4);
+        assertFalse(store.verify("alice", "rabbit".toCharArray()).get(30, TimeUnit.SECONDS));
+        assertEquals(1, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+
+        assertTrue(store.verify("alice", "wonderland".toCharArray()).get(30, TimeUnit.SECONDS));
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).startsWith("alice:pbkdf2-sha256$" + CredentialStore.ITERATIONS + "$"), lines.get(1));
+        store.close();
+
+        // The appended line wins after a restart, and is not rehashed again
+        CredentialStore reopened = new CredentialStore(path.toString(), 1, 4);
+        assertTrue(reopened.verify("alice", "wonderland".toCharArray()).get(30, TimeUnit.SECONDS));
+        assertEquals(2, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+        reopened.close();
+    }
+
+    @Test
+    void registrationIsRefusedForTakenOrMalformedNames() throws Exception {
+        CredentialStore store = new CredentialStore(directory.resolve("credentials.txt").toString(), 1, 4);
+        assertTrue(store.register("alice", "wonderland".toCharArray()).get(30, TimeUnit.SECONDS));
+        assertFalse(store.register("alice", "rabbit".toCharArray()).get(30, TimeUnit.SECONDS));
+        assertTrue(store.register("a:b", "x".toCharArray()).isCompletedExceptionally());
+        assertTrue(store.verify("alice", "wonderland".toCharArray()).get(30, TimeUnit.SECONDS));
+        assertEquals(1, store.size());
+        store.close();
+    }
+
+    private static String hash(String password, int iterations) throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 256);
+        byte[] hash = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        return "pbkdf2-sha256$" + iterations + "$" + Base64.getEncoder().encodeToString(salt) + "$" + Base64.getEncoder().encodeToString(hash);
+    }
+}
@@ -0,0 +1,110 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerImportTest {
+    private static final String HEADER = "username,email,phone,account_type,opening_balance";
+
+    @TempDir
+    Path directory;
+
+    private BankAccountManager open() {
+        return new BankAccountManager(directory.resolve("accounts.ser").toString());
+    }
+
+    private Path csv(String... rows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        lines.addAll(Arrays.asList(rows));
+        return Files.write(directory.resolve("customers.csv"), lines);
+    }
+
+    @Test
+    void onlyAcceptedRowsTakeAccountNumbers() throws IOException {
+        BankAccountManager manager = open();
+        ProfileStore profiles = new ProfileStore(directory.resolve("profiles.txt").toString());
+        int before = manager.allocateAccountNumbers(1);
+        CustomerImport.Result result = new CustomerImport(manager, profiles).run(csv(
+                "ann,ann@example.com,,basic,10",
+                "bad,,,weird,1",
+                "bob,bob@example.com,,savings,5",
+                "ann,other@example.com,,basic,1",
+                "cat,,,checking,3"), true);
+
+        assertEquals(5, result.rows);
+        assertEquals(3, result.imported);
+        assertEquals(2, result.errors.size());
+        assertNull(result.profileError);
+        assertEquals(before + 1, manager.getAccount("ann").getAccountNumber());
+        assertEquals(before + 2, manager.getAccount("bob").getAccountNumber());
+        assertEquals(before + 3, manager.getAccount("cat").getAccountNumber());
+        assertEquals(before + 2, profiles.findByUsername("bob").getAccountNumber());
+        assertEquals(before + 4, manager.allocateAccountNumbers(1));
+        profiles.close();
+        manager.close();
+    }
+
+    @Test
+    void strictImportWithARejectedRowOpensNothing() throws IOException {
+        BankAccountManager manager = open();
+        int before = manager.allocateAccountNumbers(1);
+        CustomerImport.Result result = new CustomerImport(manager, null).run(csv("dan,,,basic,1", "bad,,,weird,1"), false);
+
+        assertEquals(0, result.imported);
+        assertEquals(1, result.errors.size());
+        assertNull(manager.getAccount("dan"));
+        assertEquals(before + 1, manager.allocateAccountNumbers(1));
+        manager.close();
+    }
+
+    @Test
+    void holderRegisteredAfterValidationIsReportedNotFatal() throws IOException {
+        BankAccountManager manager = open();
+        manager.saveAccountDetails(new BankAccount(manager.allocateAccountNumber(), "bob", 0));
+        List<BankAccount> conflicts = new ArrayList<>();
+        int first = manager.allocateAccountNumbers(2);
+        manager.openAccounts(Arrays.asList(new BankAccount(first, "bob", 0), new BankAccount(first + 1, "eve", 0)),
+                Durability.SYNC, conflicts).join();
+
+        assertEquals(1, conflicts.size());
+        assertEquals("bob", conflicts.get(0).getAccountHolder());
+        assertNotEquals(first, manager.getAccount("bob").getAccountNumber());
+        assertEquals(first + 1, manager.getAccount("eve").getAccountNumber());
+        try {
+            manager.openAccounts(Arrays.asList(new BankAccount(first + 2, "bob", 0)), Durability.SYNC);
+            fail("a taken holder should fail the strict overload");
+        } catch (IllegalArgumentException expected) {
+        }
+        manager.close();
+    }
+
+    @Test
+    void failedProfileWriteReportsTheOpenedAccounts() throws IOException {
+        BankAccountManager manager = open();
+        ProfileStore profiles = new ProfileStore(directory.resolve("profiles.txt").toString()) {
+            @Override
+            public synchronized void putAll(Collection<CustomerProfile> batch) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        CustomerImport.Result result = new CustomerImport(manager, profiles).run(csv("fay,,,basic,1", "gus,,,basic,2"), true);
+
+        assertEquals(2, result.imported);
+        assertEquals("disk full", result.profileError);
+        assertNotNull(manager.getAccount("fay"));
+        assertNotNull(manager.getAccount("gus"));
+        profiles.close();
+        manager.close();
+    }
+}
@@ -0,0 +1,97 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterestAccrualTest {
+    // More than one leaf, so the run is split across the pool
+    private static final int ACCOUNTS = 2 * InterestAccrual.LEAF_SIZE + 100;
+
+    @TempDir
+    Path directory;
+
+    private BankAccountManager open() {
+        return new BankAccountManager(directory.resolve("accounts.ser").toString());
+    }
+
+    private BankAccountManager openSeeded(int accounts) {
+        BankAccountManager manager = open();
+        for (int i = 1; i <= accounts; i++) {
+            manager.saveAccountDetails(new SavingsAccount(i, "saver" + i, 1200, 0.12));
+        }
+        return manager;
+    }
+
+    @Test
+    void runCreditsEachAccountOncePerPeriod() throws Exception {
+        BankAccountManager manager = openSeeded(ACCOUNTS);
+        InterestAccrual.Result result = new InterestAccrual(manager).run(202601, null);
+        assertEquals(ACCOUNTS, result.credited);
+        double credited = manager.getAccount(1).getBalance();
+        assertTrue(credited > 1200);
+        assertEquals(202601, savings(manager, ACCOUNTS).getLastAccrualPeriod());
+
+        assertEquals(0, new InterestAccrual(manager).run(202601, null).credited);
+        assertEquals(credited, manager.getAccount(1).getBalance(), 1e-9);
+        manager.close();
+
+        BankAccountManager reopened = open();
+        assertEquals(credited, reopened.getAccount(1).getBalance(), 1e-9);
+        assertEquals(credited, reopened.getAccount(ACCOUNTS).getBalance(), 1e-9);
+        assertEquals(202601, savings(reopened, ACCOUNTS).getLastAccrualPeriod());
+        reopened.close();
+    }
+
+    @Test
+    void failedRunCreditsNothing() throws Exception {
+        BankAccountManager manager = openSeeded(ACCOUNTS);
+        manager.getJournal().close();
+        try {
+            new InterestAccrual(manager).run(202601, null);
+            fail("run should fail when the journal cannot be written");
+        } catch (IOException expected) {
+        }
+        for (int i = 1; i <= ACCOUNTS; i++) {
+            assertEquals(1200, manager.getAccount(i).getBalance(), 1e-9);
+            assertEquals(0, savings(manager, i).getLastAccrualPeriod());
+        }
+        manager.close();
+
+        // Nothing of the failed run was recorded, so the period can simply be run again
+        BankAccountManager reopened = open();
+        assertEquals(1200, reopened.getAccount(1).getBalance(), 1e-9);
+        assertEquals(ACCOUNTS, new InterestAccrual(reopened).run(202601, null).credited);
+        reopened.close();
+    }
+
+    @Test
+    void runWithoutItsCommitRecordIsDroppedOnRecovery() throws Exception {
+        // Few enough accounts that the journal is never compacted into a snapshot, so the run ends it
+        int accounts = 100;
+        BankAccountManager manager = openSeeded(accounts);
+        new InterestAccrual(manager).run(202601, null);
+        manager.close();
+        // Cut into the RUN_COMMIT record, as a crash between the parts and the commit would
+        try (RandomAccessFile journal = new RandomAccessFile(directory.resolve("accounts.ser.journal").toFile(), "rw")) {
+            journal.setLength(journal.length() - 3);
+        }
+
+        BankAccountManager reopened = open();
+        for (int i = 1; i <= accounts; i++) {
+            assertEquals(1200, reopened.getAccount(i).getBalance(), 1e-9);
+            assertEquals(0, savings(reopened, i).getLastAccrualPeriod());
+        }
+        assertEquals(accounts, new InterestAccrual(reopened).run(202601, null).credited);
+        reopened.close();
+    }
+
+    private static SavingsAccount savings(BankAccountManager manager, int accountNumber) {
+        return (SavingsAccount) manager.getAccount(accountNumber);
+    }
+}
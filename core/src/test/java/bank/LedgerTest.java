@@ -0,0 +1,142 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerTest {
+    @TempDir
+    Path directory;
+
+    private BankAccountManager open() {
+        return new BankAccountManager(directory.resolve("accounts.ser").toString());
+    }
+
+    @Test
+    void transferMovesMoneyOrNothing() {
+        BankAccountManager manager = open();
+        manager.saveAccountDetails(new CheckingAccount(1, "alice", 100, 50));
+        manager.saveAccountDetails(new SavingsAccount(2, "bob", 10, 0.01));
+        Ledger ledger = new Ledger(manager);
+
+        assertTrue(ledger.transfer(1, 2, 120));
+        assertFalse(ledger.transfer(1, 2, 40)); // past the overdraft limit
+        assertFalse(ledger.transfer(1, 1, 5));
+        assertFalse(ledger.transfer(1, 3, 5));
+        assertEquals(-20, manager.getAccount(1).getBalance(), 1e-9);
+        assertEquals(130, manager.getAccount(2).getBalance(), 1e-9);
+        manager.close();
+
+        BankAccountManager reopened = open();
+        assertEquals(-20, reopened.getAccount(1).getBalance(), 1e-9);
+        assertEquals(130, reopened.getAccount(2).getBalance(), 1e-9);
+        reopened.close();
+    }
+
+    @Test
+    void concurrentTransfersKeepTheTotal() throws InterruptedException {
+        final BankAccountManager manager = open();
+        final int accounts = 20;
+        for (int i = 0; i < accounts; i++) {
+            manager.saveAccountDetails(new CheckingAccount(i, "holder" + i, 1000, 0));
+        }
+        final Ledger ledger = new Ledger(manager);
+        Thread[] workers = new Thread[4];
+        for (int t = 0; t < workers.length; t++) {
+            final Random random = new Random(t);
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int k = 0; k < 5000; k++) {
+                        ledger.transfer(random.nextInt(accounts), random.nextInt(accounts), 1 + random.nextInt(50));
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(accounts * 1000, total(manager, accounts), 1e-6);
+        manager.close();
+
+        BankAccountManager reopened = open();
+        assertEquals(accounts * 1000, total(reopened, accounts), 1e-6);
+        reopened.close();
+    }
+
+    @Test
+    void failedJournalWriteLeavesBothAccountsUntouched() throws Exception {
+        BankAccountManager manager = open();
+        manager.saveAccountDetails(new CheckingAccount(1, "alice", 100, 0));
+        manager.saveAccountDetails(new CheckingAccount(2, "bob", 100, 0));
+        Ledger ledger = new Ledger(manager);
+        assertTrue(ledger.transfer(1, 2, 30));
+        int sourceCount = manager.getAccount(1).getTransactionCount();
+        int targetCount = manager.getAccount(2).getTransactionCount();
+
+        manager.getJournal().close();
+        try {
+            ledger.transfer(1, 2, 30);
+            fail("transfer should fail when the journal cannot be written");
+        } catch (UncheckedIOException expected) {
+        }
+        assertEquals(70, manager.getAccount(1).getBalance(), 1e-9);
+        assertEquals(130, manager.getAccount(2).getBalance(), 1e-9);
+        assertEquals(sourceCount, manager.getAccount(1).getTransactionCount());
+        assertEquals(targetCount, manager.getAccount(2).getTransactionCount());
+        manager.close();
+
+        BankAccountManager reopened = open();
+        assertEquals(70, reopened.getAccount(1).getBalance(), 1e-9);
+        assertEquals(130, reopened.getAccount(2).getBalance(), 1e-9);
+        reopened.close();
+    }
+
+    @Test
+    void failedJournalWriteFailsTheDurableFutureWithTheAccountUntouched() throws Exception {
+        BankAccountManager manager = open();
+        manager.saveAccountDetails(new CheckingAccount(1, "alice", 100, 0));
+        manager.saveAccountDetails(new LoanMortgageAccount(2, "bob", 1000, 0.05, 12));
+        LoanMortgageAccount loan = (LoanMortgageAccount) manager.getAccount(2);
+        double loanAmount = loan.getLoanAmount();
+        double payment = loan.getMonthlyPayment();
+        Ledger ledger = new Ledger(manager);
+
+        manager.getJournal().close();
+        assertFailsWithIOException(manager.getAccount(1).deposit(30, Durability.SYNC));
+        assertFailsWithIOException(manager.getAccount(1).withdraw(30, Durability.SYNC));
+        assertFailsWithIOException(ledger.deposit(1, 30, Durability.SYNC));
+        assertFailsWithIOException(loan.makeLoanPayment(payment, Durability.SYNC));
+        assertEquals(100, manager.getAccount(1).getBalance(), 1e-9);
+        assertEquals(1, manager.getAccount(1).getTransactionCount());
+        assertEquals(loanAmount, loan.getLoanAmount(), 1e-9);
+        manager.close();
+    }
+
+    private static void assertFailsWithIOException(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("the change should fail when the journal cannot be written");
+        } catch (ExecutionException expected) {
+            assertInstanceOf(IOException.class, expected.getCause());
+        }
+    }
+
+    private static double total(BankAccountManager manager, int accounts) {
+        double total = 0;
+        for (int i = 0; i < accounts; i++) {
+            total += manager.getAccount(i).getBalance();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,142 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileStoreTest {
+    @TempDir
+    Path directory;
+
+    private ProfileStore open() throws IOException {
+        return new ProfileStore(directory.resolve("profiles.dat").toString());
+    }
+
+    @Test
+    void profilesAreFoundByEveryKeyAfterARestart() throws IOException {
+        ProfileStore store = open();
+        store.put(new CustomerProfile("alice", "Alice@Example.com", "+1 (555) 010-0000", 1));
+        store.put(new CustomerProfile("bob", "bob@example.com", "", 2));
+        store.close();
+
+        ProfileStore reopened = open();
+        assertEquals(2, reopened.size());
+        assertEquals("alice", reopened.findByEmail(" alice@example.COM").getUsername());
+        assertEquals("alice", reopened.findByPhone("+15550100000").getUsername());
+        assertEquals("alice", reopened.findByAccountNumber(1).getUsername());
+        assertEquals("bob", reopened.find("bob@example.com").getUsername());
+        assertEquals("alice", reopened.find("+1 555 010 0000").getUsername());
+        assertNull(reopened.findByPhone(""));
+        assertNull(reopened.find("carol"));
+        reopened.close();
+    }
+
+    @Test
+    void replacingAProfileMovesItsIndexEntries() throws IOException {
+        ProfileStore store = open();
+        store.put(new CustomerProfile("alice", "alice@example.com", "555-0100", 1));
+        store.put(new CustomerProfile("alice", "alice@work.example", "555-0199", 1));
+        assertNull(store.findByEmail("alice@example.com"));
+        assertNull(store.findByPhone("5550100"));
+        assertEquals("alice", store.findByEmail("alice@work.example").getUsername());
+
+        // The old email is free again once alice has moved off it
+        store.put(new CustomerProfile("bob", "alice@example.com", "", 2));
+        assertTrue(store.remove("alice"));
+        assertFalse(store.remove("alice"));
+        assertNull(store.findByAccountNumber(1));
+        store.close();
+
+        ProfileStore reopened = open();
+        assertEquals(1, reopened.size());
+        assertNull(reopened.findByUsername("alice"));
+        assertEquals("bob", reopened.findByEmail("alice@example.com").getUsername());
+        reopened.close();
+    }
+
+    @Test
+    void duplicateKeysAreRefused() throws IOException {
+        ProfileStore store = open();
+        store.put(new CustomerProfile("alice", "alice@example.com", "555-0100", 1));
+        try {
+            store.put(new CustomerProfile("bob", "ALICE@example.com", "", 2));
+            fail("an email registered to another user should be refused");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            store.put(new CustomerProfile("bob", "bob@example.com", "", 1));
+            fail("an account registered to another user should be refused");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            store.putAll(Arrays.asList(new CustomerProfile("bob", "bob@example.com", "555-0200", 2),
+                    new CustomerProfile("carol", "carol@example.com", "(555) 0200", 3)));
+            fail("two profiles in one batch with the same phone number should be refused");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(1, store.size());
+        assertNull(store.findByUsername("bob"));
+        store.close();
+
+        ProfileStore reopened = open();
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void aTornRecordIsDroppedOnOpen() throws IOException {
+        Path path = directory.resolve("profiles.dat");
+        ProfileStore store = open();
+        store.put(new CustomerProfile("alice", "alice@example.com", "", 1));
+        store.put(new CustomerProfile("bob", "bob@example.com", "", 2));
+        store.close();
+        long length = Files.size(path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(length - 3);
+        }
+
+        ProfileStore reopened = open();
+        assertEquals(1, reopened.size());
+        assertNull(reopened.findByUsername("bob"));
+        reopened.put(new CustomerProfile("carol", "carol@example.com", "", 3));
+        reopened.close();
+
+        ProfileStore again = open();
+        assertEquals(2, again.size());
+        assertEquals("carol", again.findByAccountNumber(3).getUsername());
+        again.close();
+    }
+
+    @Test
+    void legacyDetailsAreImportedAndRemoved() throws IOException {
+        Path legacy = directory.resolve("user_details.txt");
+        Files.write(legacy, List.of("Username: alice", "Password: secret", "Email: alice@example.com", "Phone Number: 555-0100",
+                "Account Number: 1", "", "Username: bob", "Email: bob@example.com", "Account Number: 2"), StandardCharsets.UTF_8);
+
+        ProfileStore store = open();
+        store.importLegacy(legacy.toFile());
+        assertFalse(Files.exists(legacy));
+        assertEquals(2, store.size());
+        assertEquals("alice", store.findByPhone("5550100").getUsername());
+        assertEquals("bob", store.findByAccountNumber(2).getUsername());
+        store.close();
+
+        Files.write(legacy, List.of("Username: carol", "Account Number: x", "Username: dave", "Account Number: 4"), StandardCharsets.UTF_8);
+        ProfileStore reopened = open();
+        reopened.importLegacy(legacy.toFile());
+        assertFalse(Files.exists(legacy));
+        assertTrue(Files.exists(directory.resolve("user_details.txt.skipped")));
+        assertNull(reopened.findByUsername("carol"));
+        assertEquals("dave", reopened.findByAccountNumber(4).getUsername());
+        reopened.close();
+    }
+}
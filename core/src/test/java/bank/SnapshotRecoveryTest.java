@@ -0,0 +1,126 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotRecoveryTest {
+    @TempDir
+    Path directory;
+
+    private String filePath() {
+        return directory.resolve("accounts.ser").toString();
+    }
+
+    // 50 accounts; account 3 gets 5 between two checkpoints and 7 after the second
+    private void writeHistory() {
+        BankAccountManager manager = new BankAccountManager(filePath());
+        for (int i = 1; i <= 50; i++) {
+            manager.saveAccountDetails(new SavingsAccount(i, "saver" + i, 100, 0.01));
+        }
+        manager.checkpoint();
+        manager.getAccount(3).deposit(5);
+        manager.checkpoint();
+        manager.getAccount(3).deposit(7);
+        manager.close();
+    }
+
+    @Test
+    void reopenReplaysTheJournalOverTheSnapshot() {
+        writeHistory();
+        BankAccountManager manager = new BankAccountManager(filePath());
+        assertEquals(50, manager.getAccounts().size());
+        assertEquals(112, manager.getAccount(3).getBalance(), 1e-9);
+        assertEquals(100, manager.getAccount(4).getBalance(), 1e-9);
+        manager.close();
+    }
+
+    @Test
+    void corruptNewestSnapshotFallsBackToThePreviousOne() throws IOException {
+        writeHistory();
+        Path newest = newestSnapshotFile();
+        try (RandomAccessFile file = new RandomAccessFile(newest.toFile(), "rw")) {
+            file.seek(file.length() / 2);
+            file.writeInt(0x7FFFFFF0);
+        }
+
+        BankAccountManager manager = new BankAccountManager(filePath());
+        assertEquals(50, manager.getAccounts().size());
+        assertEquals(112, manager.getAccount(3).getBalance(), 1e-9);
+        manager.close();
+    }
+
+    @Test
+    void tornJournalTailIsDropped() throws IOException {
+        writeHistory();
+        Files.write(Path.of(filePath() + ".journal"), new byte[] {0, 0, 0, 42, 7, 1, 2}, StandardOpenOption.APPEND);
+
+        BankAccountManager manager = new BankAccountManager(filePath());
+        assertEquals(112, manager.getAccount(3).getBalance(), 1e-9);
+        manager.getAccount(3).deposit(1);
+        manager.close();
+
+        BankAccountManager reopened = new BankAccountManager(filePath());
+        assertEquals(113, reopened.getAccount(3).getBalance(), 1e-9);
+        reopened.close();
+    }
+
+    @Test
+    void intactRecordThatCannotBeAppliedStopsStartup() throws IOException {
+        writeHistory();
+        // A record with a good checksum but a transaction type nothing writes
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        payloadOut.writeByte(TransactionJournal.ENTRY);
+        payloadOut.writeUTF("saver3");
+        payloadOut.writeByte(99);
+        payloadOut.writeLong(System.currentTimeMillis());
+        payloadOut.writeLong(1);
+        payloadOut.writeLong(100);
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(payload.size());
+        payload.writeTo(recordOut);
+        recordOut.writeLong(crc.getValue());
+        Files.write(Path.of(filePath() + ".journal"), record.toByteArray(), StandardOpenOption.APPEND);
+
+        try {
+            new BankAccountManager(filePath()).close();
+            fail("a journal record that cannot be applied should stop startup");
+        } catch (UncheckedIOException expected) {
+        }
+    }
+
+    // The single snapshot file, or one shard of the generation the manifest names
+    private Path newestSnapshotFile() throws IOException {
+        Path manifest = Path.of(filePath() + ".shards");
+        if (!Files.exists(manifest)) {
+            return Path.of(filePath());
+        }
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.US_ASCII);
+        int shards = Integer.parseInt(lines.get(0).trim());
+        long generation = Long.parseLong(lines.get(1).trim());
+        for (int shard = 0; shard < shards; shard++) {
+            Path path = Path.of(filePath() + ".shard-" + shard + "-of-" + shards + "." + generation);
+            if (Files.size(path) > 64) {
+                return path;
+            }
+        }
+        throw new AssertionError("no shard of generation " + generation + " holds any accounts");
+    }
+}
@@ -0,0 +1,30 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementWriterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void fixedWidthHeaderKeepsTheHolderName() throws IOException {
+        BankAccount account = new BankAccount(7, "Zoë €uro", 25);
+        account.deposit(10.5);
+        Path path = directory.resolve("statement.txt");
+
+        StatementWriter.Summary summary = new StatementWriter(StatementWriter.Format.FIXED_WIDTH).export(account, 0, Long.MAX_VALUE, path);
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals("Statement for account 7 (Zoë €uro)", lines.get(0));
+        assertEquals(2, summary.getTransactions());
+        assertEquals(35.5, summary.getCredits(), 1e-9);
+    }
+}
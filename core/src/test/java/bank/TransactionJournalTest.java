@@ -0,0 +1,59 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionJournalTest {
+    @TempDir
+    Path directory;
+
+    private TransactionJournal open(Map<String, BankAccount> accounts) throws IOException {
+        TransactionJournal journal = new TransactionJournal(directory.resolve("accounts.ser.journal").toString());
+        journal.recover(accounts, 0);
+        return journal;
+    }
+
+    @Test
+    void replaysWhatWasAppended() throws IOException {
+        TransactionJournal journal = open(new HashMap<String, BankAccount>());
+        journal.appendAccount(new CheckingAccount(1, "alice", 100, 50));
+        journal.appendAccount(new SavingsAccount(2, "bob", 10, 0.01));
+        journal.close();
+
+        Map<String, BankAccount> accounts = new HashMap<>();
+        open(accounts).close();
+        assertEquals(2, accounts.size());
+        assertEquals(100, accounts.get("alice").getBalance(), 1e-9);
+        assertEquals(2, accounts.get("bob").getAccountNumber());
+    }
+
+    @Test
+    void closeCompletesWaitersAndTheJournalStaysClosed() throws Exception {
+        TransactionJournal journal = open(new HashMap<String, BankAccount>());
+        journal.appendAccount(new BankAccount(1, "alice", 10));
+        CompletableFuture<String> durable = journal.whenDurable("done", Durability.BATCHED);
+        journal.close();
+        assertEquals("done", durable.get(10, TimeUnit.SECONDS));
+
+        // A late checkpoint must not reopen the file behind the stopped sync thread
+        try {
+            journal.rotate(1);
+            fail("rotate should fail on a closed journal");
+        } catch (IOException expected) {
+        }
+        try {
+            journal.appendAccount(new BankAccount(2, "bob", 10));
+            fail("append should fail on a closed journal");
+        } catch (IOException expected) {
+        }
+    }
+}
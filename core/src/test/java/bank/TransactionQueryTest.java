@@ -0,0 +1,152 @@
+package bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionQueryTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long MARCH_1 = LocalDate.of(2024, 3, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+
+    @TempDir
+    Path directory;
+
+    private BankAccountManager manager;
+
+    @BeforeEach
+    void open() {
+        manager = new BankAccountManager(directory.resolve("accounts.ser").toString());
+    }
+
+    @AfterEach
+    void close() {
+        manager.close();
+    }
+
+    private static void settle(BankAccount account, byte type, long timestamp, long cents) {
+        ReentrantLock lock = Ledger.STRIPES.forAccount(account.getAccountNumber());
+        lock.lock();
+        try {
+            account.settle(type, timestamp, TransactionIdGenerator.next(), cents);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Two days of March 2024 in UTC, plus a deposit on the third day that the queries leave out
+    private void addHistory() {
+        BankAccount savings = new SavingsAccount(1, "alice", 0, 0.01);
+        BankAccount checking = new CheckingAccount(2, "bob", 0, 100);
+        BankAccount plain = new BankAccount(3, "carol", 0);
+        manager.saveAccountDetails(savings);
+        manager.saveAccountDetails(checking);
+        manager.saveAccountDetails(plain);
+        settle(savings, TransactionLog.DEPOSIT, MARCH_1 + 10 * 3600000L, 1000);
+        settle(savings, TransactionLog.DEPOSIT, MARCH_1 + DAY - 1, 500);
+        settle(savings, TransactionLog.DEPOSIT, MARCH_1 + DAY, 200);
+        settle(checking, TransactionLog.WITHDRAW, MARCH_1 + 12 * 3600000L, 300);
+        settle(checking, TransactionLog.DEPOSIT, MARCH_1 + DAY + 3600000L, 700);
+        settle(plain, TransactionLog.DEPOSIT, MARCH_1 + 2 * DAY, 50);
+    }
+
+    private static TransactionQuery twoDays() {
+        return new TransactionQuery().between(MARCH_1, MARCH_1 + 2 * DAY - 1).zone(ZoneOffset.UTC);
+    }
+
+    @Test
+    void depositsPerDay() {
+        addHistory();
+        TransactionQuery.Result result = twoDays().transactionTypes(TransactionLog.DEPOSIT).groupBy(TransactionQuery.GroupBy.DAY).run(manager);
+        assertEquals(4, result.scanned);
+        assertEquals(2, result.groups.size());
+        TransactionQuery.Group first = result.groups.get(0);
+        assertEquals("2024-03-01", first.getLabel());
+        assertEquals(2, first.getCount());
+        assertEquals(15.00, first.getSum(), 1e-9);
+        assertEquals(5.00, first.getMin(), 1e-9);
+        assertEquals(10.00, first.getMax(), 1e-9);
+        assertEquals(7.50, first.getAverage(), 1e-9);
+        TransactionQuery.Group second = result.groups.get(1);
+        assertEquals("2024-03-02", second.getLabel());
+        assertEquals(9.00, second.getSum(), 1e-9);
+
+        // An hour east of UTC the last deposit of the first day falls on the second
+        result = twoDays().transactionTypes(TransactionLog.DEPOSIT).groupBy(TransactionQuery.GroupBy.DAY).zone(ZoneOffset.ofHours(1)).run(manager);
+        assertEquals(10.00, result.groups.get(0).getSum(), 1e-9);
+        assertEquals(14.00, result.groups.get(1).getSum(), 1e-9);
+    }
+
+    @Test
+    void groupsByAccountTypeAndTransactionType() {
+        addHistory();
+        TransactionQuery.Result result = twoDays().groupBy(TransactionQuery.GroupBy.ACCOUNT_TYPE).run(manager);
+        assertEquals(5, result.scanned);
+        assertEquals(2, result.groups.size());
+        assertEquals("Savings", result.groups.get(0).getLabel());
+        assertEquals(17.00, result.groups.get(0).getSum(), 1e-9);
+        assertEquals("Checking", result.groups.get(1).getLabel());
+        assertEquals(10.00, result.groups.get(1).getSum(), 1e-9);
+
+        result = twoDays().accountTypes(AccountCodec.CHECKING).groupBy(TransactionQuery.GroupBy.TRANSACTION_TYPE).run(manager);
+        assertEquals(2, result.groups.size());
+        assertEquals(TransactionLog.DEPOSIT, result.groups.get(0).getKey());
+        assertEquals(7.00, result.groups.get(0).getSum(), 1e-9);
+        assertEquals(TransactionLog.WITHDRAW, result.groups.get(1).getKey());
+        assertEquals(3.00, result.groups.get(1).getSum(), 1e-9);
+
+        List<TransactionQuery.Group> top = twoDays().groupBy(TransactionQuery.GroupBy.ACCOUNT).run(manager).top(1);
+        assertEquals(1, top.size());
+        assertEquals("1", top.get(0).getLabel());
+
+        result = new TransactionQuery().between(MARCH_1 + 2 * DAY, MARCH_1 + 3 * DAY - 1).accountTypes(AccountCodec.SAVINGS).run(manager);
+        assertEquals(0, result.scanned);
+        assertTrue(result.groups.isEmpty());
+    }
+
+    @Test
+    void partialsFromEveryLeafAreMerged() {
+        int accounts = 3 * TransactionQuery.LEAF_SIZE + 17;
+        for (int i = 0; i < accounts; i++) {
+            BankAccount account = new BankAccount(i, "holder" + i, 0);
+            manager.saveAccountDetails(account);
+            settle(account, TransactionLog.DEPOSIT, MARCH_1 + i, i + 1);
+            settle(account, TransactionLog.WITHDRAWL, MARCH_1 + DAY + i, 1);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        TransactionQuery.Result result = twoDays().transactionTypes(TransactionLog.DEPOSIT, TransactionLog.WITHDRAWL)
+                .groupBy(TransactionQuery.GroupBy.TRANSACTION_TYPE).run(manager, pool);
+        pool.shutdown();
+        assertEquals(2L * accounts, result.scanned);
+        TransactionQuery.Group deposits = result.groups.get(0);
+        assertEquals(accounts, deposits.getCount());
+        assertEquals(TransactionLog.toAmount((long) accounts * (accounts + 1) / 2), deposits.getSum(), 1e-6);
+        assertEquals(0.01, deposits.getMin(), 1e-9);
+        assertEquals(TransactionLog.toAmount(accounts), deposits.getMax(), 1e-9);
+        assertEquals(accounts, result.groups.get(1).getCount());
+    }
+
+    @Test
+    void segmentsOutsideTheWindowAreSkipped() {
+        BankAccount account = new BankAccount(1, "alice", 0);
+        manager.saveAccountDetails(account);
+        for (int i = 0; i < 3000; i++) {
+            settle(account, TransactionLog.DEPOSIT, MARCH_1 + i * 1000L, 100);
+        }
+        assertTrue(account.segments.size() > 1, "history should span several segments");
+
+        TransactionQuery.Result result = new TransactionQuery().between(MARCH_1 + 2990 * 1000L, MARCH_1 + DAY).run(manager);
+        assertEquals(10, result.scanned);
+        assertEquals(10.00, result.groups.get(0).getSum(), 1e-9);
+        assertTrue(result.segmentsSkipped > 0, result.toString());
+    }
+}
@@ -0,0 +1,138 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferPipelineTest {
+    @TempDir
+    Path directory;
+
+    private BankAccountManager open() {
+        return new BankAccountManager(directory.resolve("accounts.ser").toString());
+    }
+
+    @Test
+    void settlesInOrderAndRejectsOverdrafts() throws Exception {
+        BankAccountManager manager = open();
+        manager.saveAccountDetails(new CheckingAccount(1, "alice", 100, 50));
+        manager.saveAccountDetails(new SavingsAccount(2, "bob", 10, 0.01));
+        TransferPipeline pipeline = new TransferPipeline(manager, Durability.SYNC, 1024);
+
+        CompletableFuture<Boolean> first = pipeline.transfer(1, 2, 120);
+        CompletableFuture<Boolean> second = pipeline.transfer(1, 2, 40); // past the overdraft after the first
+        CompletableFuture<Boolean> third = pipeline.transfer(2, 1, 5);
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertFalse(second.get(10, TimeUnit.SECONDS));
+        assertTrue(third.get(10, TimeUnit.SECONDS));
+        assertEquals(-15, manager.getAccount(1).getBalance(), 1e-9);
+        assertEquals(125, manager.getAccount(2).getBalance(), 1e-9);
+        assertEquals(2, pipeline.getSettled());
+        assertEquals(1, pipeline.getRejected());
+        pipeline.close();
+        manager.close();
+
+        BankAccountManager reopened = open();
+        assertEquals(-15, reopened.getAccount(1).getBalance(), 1e-9);
+        assertEquals(125, reopened.getAccount(2).getBalance(), 1e-9);
+        reopened.close();
+    }
+
+    @Test
+    void manyTransfersKeepTheTotal() throws Exception {
+        BankAccountManager manager = open();
+        int accounts = 50;
+        for (int i = 0; i < accounts; i++) {
+            manager.saveAccountDetails(new CheckingAccount(i, "holder" + i, 1000, 0));
+        }
+        TransferPipeline pipeline = new TransferPipeline(manager, Durability.BATCHED, 256);
+        Random random = new Random(1);
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int k = 0; k < 20000; k++) {
+            futures.add(pipeline.transfer(random.nextInt(accounts), random.nextInt(accounts), 1 + random.nextInt(100)));
+        }
+        for (CompletableFuture<Boolean> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        double total = 0;
+        for (int i = 0; i < accounts; i++) {
+            total += manager.getAccount(i).getBalance();
+        }
+        assertEquals(accounts * 1000, total, 1e-6);
+        pipeline.close();
+        manager.close();
+    }
+
+    @Test
+    void failedJournalWriteFailsTheBatchAndRestoresBalances() throws Exception {
+        BankAccountManager manager = open();
+        manager.saveAccountDetails(new CheckingAccount(1, "alice", 100, 0));
+        manager.saveAccountDetails(new CheckingAccount(2, "bob", 100, 0));
+        TransferPipeline pipeline = new TransferPipeline(manager, Durability.SYNC, 1024);
+        assertTrue(pipeline.transfer(1, 2, 30).get(10, TimeUnit.SECONDS));
+        int sourceCount = manager.getAccount(1).getTransactionCount();
+        int targetCount = manager.getAccount(2).getTransactionCount();
+
+        manager.getJournal().close();
+        CompletableFuture<Boolean> failed = pipeline.transfer(1, 2, 30);
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+            fail("transfer should fail when the journal cannot be written");
+        } catch (ExecutionException expected) {
+            assertInstanceOf(IOException.class, expected.getCause());
+        }
+        assertEquals(70, manager.getAccount(1).getBalance(), 1e-9);
+        assertEquals(130, manager.getAccount(2).getBalance(), 1e-9);
+        assertEquals(sourceCount, manager.getAccount(1).getTransactionCount());
+        assertEquals(targetCount, manager.getAccount(2).getTransactionCount());
+        assertEquals(1, pipeline.getFailed());
+        pipeline.close();
+        manager.close();
+
+        BankAccountManager reopened = open();
+        assertEquals(70, reopened.getAccount(1).getBalance(), 1e-9);
+        assertEquals(130, reopened.getAccount(2).getBalance(), 1e-9);
+        reopened.close();
+    }
+
+    @Test
+    void errorInABatchFailsItAndSettlementCarriesOn() throws Exception {
+        BankAccountManager manager = open();
+        manager.saveAccountDetails(new CheckingAccount(1, "alice", 100, 0) {
+            @Override
+            boolean allowsWithdrawal(long amountCents) {
+                throw new IllegalStateException("broken withdrawal rule");
+            }
+        });
+        manager.saveAccountDetails(new CheckingAccount(2, "bob", 100, 0));
+        TransferPipeline pipeline = new TransferPipeline(manager, Durability.SYNC, 1024);
+
+        try {
+            pipeline.transfer(1, 2, 30).get(10, TimeUnit.SECONDS);
+            fail("transfer should fail when settling it throws");
+        } catch (ExecutionException expected) {
+            assertInstanceOf(IllegalStateException.class, expected.getCause());
+        }
+        assertTrue(pipeline.transfer(2, 1, 20).get(10, TimeUnit.SECONDS));
+        assertEquals(120, manager.getAccount(1).getBalance(), 1e-9);
+        assertEquals(80, manager.getAccount(2).getBalance(), 1e-9);
+        pipeline.close();
+
+        try {
+            pipeline.transfer(2, 1, 20);
+            fail("a closed pipeline should refuse transfers");
+        } catch (IllegalStateException expected) {
+        }
+        manager.close();
+    }
+}
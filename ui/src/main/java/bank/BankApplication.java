@@ -0,0 +1,98 @@
+package bank;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.function.BiConsumer;
+
+class BankApplication extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private BankAccount bankAccount;
+    private JTextArea receiptArea;
+
+    public BankApplication(BankAccount bankAccount) {
+        this.bankAccount = bankAccount;
+
+        // Initialize Swing components
+        JButton depositButton = new JButton("Deposit");
+        JButton withdrawButton = new JButton("Withdraw");
+        receiptArea = new JTextArea(10, 30);
+        receiptArea.setEditable(false);
+
+        // Create a panel for components
+        JPanel panel = new JPanel(new GridLayout(3, 1));
+        panel.add(depositButton);
+        panel.add(withdrawButton);
+
+        // Add the panel to the center of the frame
+        add(panel, BorderLayout.CENTER);
+        add(new JScrollPane(receiptArea), BorderLayout.SOUTH);
+
+        // Set up action listeners
+        depositButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleDeposit();
+            }
+        });
+
+        withdrawButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleWithdraw();
+            }
+        });
+
+        // Set up frame properties
+        setTitle("Bank Application");
+        setSize(400, 300);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null); // Center the frame
+        setVisible(true);
+    }
+
+    private void handleDeposit() {
+        final double amount = Double.parseDouble(JOptionPane.showInputDialog("Enter deposit amount:"));
+        BankService.getShared().deposit(bankAccount.getAccountHolder(), amount).whenCompleteAsync(new BiConsumer<Boolean, Throwable>() {
+            @Override
+            public void accept(Boolean done, Throwable error) {
+                if (error != null) {
+                    updateReceiptArea("Deposit failed: " + BankService.messageOf(error));
+                    return;
+                }
+                Transaction transaction = new Transaction(amount,"Deposit");
+                Receipt receipt = new Receipt(transaction, "Deposit Amount: " + amount);
+                updateReceiptArea(receipt.generateReceipt());
+            }
+        }, SwingExecutor.INSTANCE);
+    }
+
+    private void handleWithdraw() {
+        final double amount = Double.parseDouble(JOptionPane.showInputDialog("Enter withdrawal amount:"));
+        BankService.getShared().withdraw(bankAccount.getAccountHolder(), amount).whenCompleteAsync(new BiConsumer<Boolean, Throwable>() {
+            @Override
+            public void accept(Boolean done, Throwable error) {
+                if (error != null || !done) {
+                    updateReceiptArea("Withdrawal failed: " + (error != null ? BankService.messageOf(error) : "insufficient funds"));
+                    return;
+                }
+                // Generate receipt and update the receipt area
+                Transaction transaction = new Transaction(amount,"Withdrawl");
+                Receipt receipt = new Receipt(transaction, "Withdrawal Amount: " + amount);
+                updateReceiptArea(receipt.generateReceipt());
+            }
+        }, SwingExecutor.INSTANCE);
+    }
+
+    private void updateReceiptArea(String receiptText) {
+        receiptArea.setText(receiptText);
+    }
+
+    
+
+    
+
+    
+
+}
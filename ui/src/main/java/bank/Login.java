@@ -0,0 +1,192 @@
+package bank;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+public class Login extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = Logger.getLogger(Login.class.getName());
+    private CredentialStore credentials;
+
+    private JTextField usernameField;
+    private JPasswordField passwordField;
+    private JButton loginButton;
+    private JButton registerButton;
+
+    public Login() {
+        credentials = CredentialStore.getShared();
+
+        // Initialize Swing components
+        usernameField = new JTextField(20);
+        passwordField = new JPasswordField(20);
+        loginButton = new JButton("Login");
+        registerButton = new JButton("Register");
+
+        // Create a panel for components
+        JPanel panel = new JPanel(new GridLayout(3,2));
+        panel.add(new JLabel("Username:"));
+        panel.add(usernameField);
+        panel.add(new JLabel("Password:"));
+        panel.add(passwordField);
+        panel.add(loginButton);
+        panel.add(registerButton);
+
+        // Add the panel to the center of the frame
+        add(panel, BorderLayout.CENTER);
+
+        // Set up action listeners
+        loginButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleLogin();
+            }
+        });
+
+        registerButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleRegister();
+            }
+        });
+
+        // Set up frame properties
+        setTitle("Bank Mini Project");
+        setSize(400, 200);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null); // Center the frame
+        setVisible(true);
+    }
+
+    private void handleLogin() {
+        final String username = usernameField.getText();
+
+        // Password hashing is deliberately slow, so it runs on the credential store's pool
+        credentials.verify(username, passwordField.getPassword()).whenCompleteAsync(new BiConsumer<Boolean, Throwable>() {
+            @Override
+            public void accept(Boolean valid, Throwable error) {
+                if (error != null) {
+                    JOptionPane.showMessageDialog(Login.this, "Login failed: " + BankService.messageOf(error), "Error", JOptionPane.ERROR_MESSAGE);
+                } else if (!valid) {
+                    JOptionPane.showMessageDialog(Login.this, "Invalid username or password", "Error", JOptionPane.ERROR_MESSAGE);
+                } else {
+                    openAccountFor(username);
+                }
+            }
+        }, SwingExecutor.INSTANCE);
+    }
+
+    private void openAccountFor(final String username) {
+        // Load the user's bank account details off the Event Dispatch Thread
+        BankService.getShared().findAccount(username).whenCompleteAsync(new BiConsumer<BankAccount, Throwable>() {
+            @Override
+            public void accept(BankAccount bankAccount, Throwable error) {
+                if (error != null || bankAccount == null) {
+                    JOptionPane.showMessageDialog(Login.this, "No bank account found for " + username, "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                openAccountDetailsForm(bankAccount);
+                dispose();
+            }
+        }, SwingExecutor.INSTANCE);
+    }
+
+    private void openAccountDetailsForm(BankAccount bankAccount) {
+        // Create and open a new JFrame to display account details
+        // Customize this part based on your application needs
+        JFrame accountDetailsFrame = new JFrame("Account Details");
+        JLabel balanceLabel = new JLabel("Balance: " + bankAccount.getBalance());
+        JLabel accountHolderLabel = new JLabel("Account Holder : "+bankAccount.getAccountHolder());
+        JLabel accountNumberLabel = new JLabel("Account Number : "+bankAccount.getAccountNumber());
+        JButton depositButton = new JButton("Deposit");
+        JButton withdrawButton = new JButton("Withdraw");
+
+        depositButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleDeposit(bankAccount, balanceLabel);
+            }
+        });
+
+        withdrawButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleWithdraw(bankAccount, balanceLabel);
+            }
+        });
+
+        JPanel panel = new JPanel(new GridLayout(5, 1));
+        panel.add(accountHolderLabel);
+        panel.add(accountNumberLabel);
+        panel.add(balanceLabel);
+        panel.add(depositButton);
+        panel.add(withdrawButton);
+
+        accountDetailsFrame.add(panel);
+        accountDetailsFrame.setSize(300, 200);
+        accountDetailsFrame.setLocationRelativeTo(null);
+        accountDetailsFrame.setVisible(true);
+    }
+
+    private void handleDeposit(final BankAccount bankAccount, final JLabel balanceLabel) {
+        String depositAmountString = JOptionPane.showInputDialog("Enter deposit amount:");
+        if (depositAmountString != null && !depositAmountString.isEmpty()) {
+            double depositAmount = Double.parseDouble(depositAmountString);
+            BankService.getShared().deposit(bankAccount.getAccountHolder(), depositAmount).whenCompleteAsync(new BiConsumer<Boolean, Throwable>() {
+                @Override
+                public void accept(Boolean done, Throwable error) {
+                    if (error != null) {
+                        JOptionPane.showMessageDialog(null, "Deposit failed: " + BankService.messageOf(error), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                    balanceLabel.setText("Balance: " + bankAccount.getBalance());
+                }
+            }, SwingExecutor.INSTANCE);
+        }
+    }
+
+    private void handleWithdraw(final BankAccount bankAccount, final JLabel balanceLabel) {
+        String withdrawAmountString = JOptionPane.showInputDialog("Enter withdrawal amount:");
+        if (withdrawAmountString != null && !withdrawAmountString.isEmpty()) {
+            double withdrawAmount = Double.parseDouble(withdrawAmountString);
+            BankService.getShared().withdraw(bankAccount.getAccountHolder(), withdrawAmount).whenCompleteAsync(new BiConsumer<Boolean, Throwable>() {
+                @Override
+                public void accept(Boolean done, Throwable error) {
+                    if (error != null) {
+                        JOptionPane.showMessageDialog(null, "Withdrawal failed: " + BankService.messageOf(error), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                    balanceLabel.setText("Balance: " + bankAccount.getBalance());
+                }
+            }, SwingExecutor.INSTANCE);
+        }
+    }
+    
+    private void handleRegister() {
+        String username = usernameField.getText();
+
+        credentials.register(username, passwordField.getPassword()).whenCompleteAsync(new BiConsumer<Boolean, Throwable>() {
+            @Override
+            public void accept(Boolean registered, Throwable error) {
+                if (error != null) {
+                    JOptionPane.showMessageDialog(Login.this, "Error saving user credentials: " + BankService.messageOf(error), "Error", JOptionPane.ERROR_MESSAGE);
+                } else if (!registered) {
+                    JOptionPane.showMessageDialog(Login.this, "Username already exists", "Error", JOptionPane.ERROR_MESSAGE);
+                } else {
+                    LOG.info("User credentials saved for " + username);
+                    new RegisterForm();
+                }
+            }
+        }, SwingExecutor.INSTANCE);
+    }
+
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                new Login();
+            }
+        });
+    }
+}
@@ -0,0 +1,187 @@
+package bank;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class RegisterForm extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = Logger.getLogger(RegisterForm.class.getName());
+    private JTextField usernameField;
+    private JPasswordField passwordField;
+    private JTextField emailField;
+    private JTextField phonenumberField;
+    private Map<String, String> userCredentials;
+
+    class Person {
+        private String username;
+        private String password;
+        private String email;
+        private String phonenumber;
+
+        public Person(String username_, String password_, String email_, String phonenumber_) {
+            username = username_;
+            password = password_;
+            email = email_;
+            phonenumber = phonenumber_;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getPhonenumber() {
+            return phonenumber;
+        }
+
+        public void setPassword(String password_) {
+            password = password_;
+        }
+
+        public void setEmail(String email_) {
+            email = email_;
+        }
+
+        public void setPhonenumber(String phonenumber_) {
+            phonenumber = phonenumber_;
+        }
+
+        public boolean verifyPassword(String password_) {
+            return password.equals(password_);
+        }
+    }
+
+    public RegisterForm() {
+        userCredentials = new HashMap<>(); // Initialize the userCredentials map
+
+        // Initialize Swing components
+        usernameField = new JTextField(20);
+        passwordField = new JPasswordField(20);
+        emailField = new JTextField(20);
+        phonenumberField = new JTextField(20);
+
+        JButton registerButton = new JButton("Register");
+
+        // Create a panel for components
+        JPanel panel = new JPanel(new GridLayout(5, 2));
+        panel.add(new JLabel("Username:"));
+        panel.add(usernameField);
+        panel.add(new JLabel("Password:"));
+        panel.add(passwordField);
+        panel.add(new JLabel("Email:"));
+        panel.add(emailField);
+        panel.add(new JLabel("Phone Number:"));
+        panel.add(phonenumberField);
+        panel.add(new JLabel()); // Empty label for spacing
+        panel.add(registerButton);
+
+        // Add the panel to the center of the frame
+        add(panel, BorderLayout.CENTER);
+
+        // Set up action listener
+        registerButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleRegister();
+            }
+        });
+
+        // Set up frame properties
+        setTitle("Register Form");
+        setSize(400, 200);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null); // Center the frame
+        setVisible(true);
+    }
+
+    private void handleRegister() {
+        final String username = usernameField.getText();
+        final char[] password = passwordField.getPassword();
+        final String email = emailField.getText();
+        final String phonenumber = phonenumberField.getText();
+
+        // Create a BankAccount based on the selected account type (Savings, LoanMortgage, or Checking)
+        final BankAccount bankAccount = createBankAccount();
+        final RegisterForm form = this;
+        final AtomicBoolean opened = new AtomicBoolean();
+        // The details are stored only once the account exists, off the Event Dispatch Thread, and the
+        // form is cleared only once both steps have succeeded
+        BankService.getShared().openAccount(bankAccount).thenApplyAsync(new Function<BankAccount, BankAccount>() {
+            @Override
+            public BankAccount apply(BankAccount account) {
+                opened.set(true);
+                saveUserDetails(username, password, new CustomerProfile(username, email, phonenumber, account.getAccountNumber()));
+                return account;
+            }
+        }, ForkJoinPool.commonPool()).whenCompleteAsync(new BiConsumer<BankAccount, Throwable>() {
+            @Override
+            public void accept(BankAccount account, Throwable error) {
+                if (error != null) {
+                    if (opened.get()) {
+                        LOG.log(Level.WARNING, "Error saving details for " + username, error);
+                        JOptionPane.showMessageDialog(form, "Error saving user details: " + BankService.messageOf(error), "Error", JOptionPane.ERROR_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(form, "Error opening account: " + BankService.messageOf(error), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                    return;
+                }
+                JOptionPane.showMessageDialog(form, "Registration successful!");
+                clearFields();
+            }
+        }, SwingExecutor.INSTANCE);
+    }
+
+    private BankAccount createBankAccount() {
+        // Logic to determine the selected account type and create the corresponding BankAccount
+        // For simplicity, I'm assuming a default SavingsAccount here. Modify as needed.
+        int accountNumber = BankService.getShared().getManager().allocateAccountNumber();
+        return new SavingsAccount(accountNumber, usernameField.getText(), 500, 0.02);
+    }
+
+    // Throws on failure; handleRegister reports it
+    private void saveUserDetails(String username, char[] password, CustomerProfile profile) {
+        try {
+            // The password goes to the credential store, hashed; the profile keeps only contact details
+            CredentialStore credentials = CredentialStore.getShared();
+            if (!credentials.contains(username)) {
+                credentials.register(username, password).join();
+            }
+            ProfileStore.getShared().put(profile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+    }
+
+    private void clearFields() {
+        usernameField.setText("");
+        passwordField.setText("");
+        emailField.setText("");
+        phonenumberField.setText("");
+    }
+
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                new RegisterForm();
+            }
+        });
+    }
+}
@@ -0,0 +1,14 @@
+package bank;
+
+import javax.swing.*;
+import java.util.concurrent.Executor;
+
+// Runs service callbacks on the Event Dispatch Thread
+class SwingExecutor implements Executor {
+    public static final SwingExecutor INSTANCE = new SwingExecutor();
+
+    @Override
+    public void execute(Runnable task) {
+        SwingUtilities.invokeLater(task);
+    }
+}